@@ -0,0 +1,64 @@
+package benchmark;
+
+import jdk.incubator.vector.IntVector;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import util.VectorUtils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+
+/**
+ * Random square TYPE_INT_RGB frame shared by the kernel benchmarks, parameterized over the frame
+ * side and the vector width. JMH runs each parameter combination in its own fork, so the width is
+ * set before VectorUtils picks its species; widths above the hardware maximum run at the maximum.
+ */
+@State(Scope.Benchmark)
+public class ImageState {
+
+	@Param({"256", "1024", "4096"})
+	public int size;
+
+	// 0 is the platform's preferred width
+	@Param({"0", "128", "256", "512"})
+	public int vectorBits;
+
+	public BufferedImage image;
+	public int[] pixels;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		if (vectorBits > 0) {
+			System.setProperty("imageprocessor.vector.bits", String.valueOf(vectorBits));
+		}
+		int expectedBits = vectorBits > 0
+				? Math.min(vectorBits, IntVector.SPECIES_MAX.vectorBitSize())
+				: IntVector.SPECIES_PREFERRED.vectorBitSize();
+		if (VectorUtils.INT_SPECIES.vectorBitSize() != expectedBits) {
+			throw new IllegalStateException("VectorUtils already runs at " + VectorUtils.INT_SPECIES
+					+ "; run the benchmarks forked so each width gets a fresh JVM");
+		}
+
+		image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		Random random = new Random(42);
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = random.nextInt() | VectorUtils.ALPHA_MASK;
+		}
+	}
+
+	public long getPixelCount() {
+		return (long) size * size;
+	}
+
+	/**
+	 * Empty frame of the same size and type, for kernels that write into caller-owned images
+	 */
+	public BufferedImage createTarget() {
+		return new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+	}
+}
@@ -0,0 +1,28 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary result that counts source pixels processed. The benchmarks report in operations per
+ * microsecond, so this counter reads directly as megapixels per second and stays comparable
+ * across frame sizes.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Megapixels {
+
+	public long megapixels;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		megapixels = 0;
+	}
+
+	void add(long pixels) {
+		megapixels += pixels;
+	}
+}
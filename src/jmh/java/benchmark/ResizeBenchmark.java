@@ -0,0 +1,46 @@
+package benchmark;
+
+import model.FitMode;
+import model.ResampleFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import processor.Resampler;
+import util.BufferPool;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resampler.resize down to a quarter of each side on the shared pool. Counts source pixels,
+ * which is what the horizontal pass reads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class ResizeBenchmark {
+
+	@Param
+	public ResampleFilter resampleFilter;
+
+	@Benchmark
+	public void resize(ImageState source, Megapixels counter, Blackhole blackhole) {
+		int target = Math.max(1, source.size / 4);
+		BufferedImage result = Resampler.resize(source.image, target, target, resampleFilter, FitMode.EXACT);
+		blackhole.consume(result);
+		// Hand the result back as the pipelines do, so the pool reaches its steady state
+		BufferPool.get().recycle(result);
+		counter.add(source.getPixelCount());
+	}
+}
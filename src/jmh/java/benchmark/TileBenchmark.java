@@ -0,0 +1,58 @@
+package benchmark;
+
+import model.FilterType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import processor.FilterPlan;
+import processor.ProcessingRuntime;
+import task.TileProcessingTask;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One filter stage split into TileProcessingTask quadrants on the shared ForkJoin pool,
+ * as the parallel tile pipeline runs it
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class TileBenchmark {
+
+	@Param({"GRAYSCALE", "BLUR"})
+	public FilterType filter;
+
+	private FilterPlan.Stage stage;
+	private BufferedImage target;
+
+	@Setup(Level.Trial)
+	public void setUp(ImageState source) {
+		stage = FilterPlan.compile(Collections.singletonList(filter)).getStages().get(0);
+		target = source.createTarget();
+	}
+
+	@Benchmark
+	public BufferedImage tiles(ImageState source, Megapixels counter) {
+		BufferedImage image = source.image;
+		ProcessingRuntime.get().invoke(new TileProcessingTask(
+				(x, y, width, height) -> FilterPlan.executeStage(stage, image, target,
+						x, y, width, height, FilterPlan.Mode.SCALAR),
+				0, 0, image.getWidth(), image.getHeight()));
+		counter.add(source.getPixelCount());
+		return target;
+	}
+}
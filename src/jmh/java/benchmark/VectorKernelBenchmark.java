@@ -0,0 +1,76 @@
+package benchmark;
+
+import model.FilterType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.ImageUtils;
+import util.VectorUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded Vector API kernels from VectorUtils on one in-memory frame
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+public class VectorKernelBenchmark {
+
+	/**
+	 * Per-thread destination buffers, so the kernels never allocate inside the measurement
+	 */
+	@State(Scope.Thread)
+	public static class Output {
+		int[] pixels;
+		BufferedImage image;
+		float[] kernel;
+
+		@Setup(Level.Trial)
+		public void setUp(ImageState source) {
+			pixels = new int[source.pixels.length];
+			image = source.createTarget();
+			kernel = ImageUtils.getKernel(FilterType.BLUR);
+		}
+	}
+
+	@Benchmark
+	public int[] adjustBrightness(ImageState source, Output output, Megapixels counter) {
+		VectorUtils.adjustBrightness(source.pixels, output.pixels, ImageUtils.BRIGHTNESS_OFFSET);
+		counter.add(source.getPixelCount());
+		return output.pixels;
+	}
+
+	@Benchmark
+	public int[] adjustContrast(ImageState source, Output output, Megapixels counter) {
+		VectorUtils.adjustContrast(source.pixels, output.pixels, ImageUtils.CONTRAST_FACTOR);
+		counter.add(source.getPixelCount());
+		return output.pixels;
+	}
+
+	@Benchmark
+	public int[] convertToGrayscale(ImageState source, Output output, Megapixels counter) {
+		VectorUtils.convertToGrayscale(source.pixels, output.pixels);
+		counter.add(source.getPixelCount());
+		return output.pixels;
+	}
+
+	@Benchmark
+	public BufferedImage applyConvolutionVector(ImageState source, Output output, Megapixels counter) {
+		VectorUtils.applyConvolutionVector(source.image, output.image, output.kernel,
+				ImageUtils.getKernelSize(FilterType.BLUR));
+		counter.add(source.getPixelCount());
+		return output.image;
+	}
+}
@@ -1,13 +1,20 @@
 import config.ProcessingConfig;
+import config.Rendition;
 import model.FilterType;
+import model.FitMode;
 import model.ProcessingStats;
+import model.ResampleFilter;
+import processor.ConcurrencyController;
 import processor.ImageProcessor;
+import processor.MemoryBudget;
+import processor.ProcessingRuntime;
+import util.BufferPool;
+import util.ImageDiscovery;
 import util.ImageUtils;
+import util.ResultCache;
 import util.VectorUtils;
 
-import java.io.IOException;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -16,13 +23,13 @@ import java.util.logging.Logger;
  * Main application class for the Concurrent Image Processor
  * Provides interactive menu system and orchestrates image processing operations
  * Now includes Vector API SIMD acceleration support with controlled thread pool management
- */2
+ */
 public class ConcurrentImageProcessor {
 
 	private static final Logger LOGGER = Logger.getLogger(ConcurrentImageProcessor.class.getName());
-	// FIXED: Use same thread pool size as ImageProcessor for consistency
-	private static final int THREAD_POOL_SIZE = 8;
-	private static final int MAX_MENU_CHOICE = 7;
+	// Same shared pool that ImageProcessor runs on, sized from availableProcessors()
+	private static final int THREAD_POOL_SIZE = ProcessingRuntime.get().getParallelism();
+	private static final int MAX_MENU_CHOICE = 9;
 	private static final int MIN_MENU_CHOICE = 0;
 
 	// Security: Prevent directory traversal attacks
@@ -34,8 +41,7 @@ public class ConcurrentImageProcessor {
 	private static final int MIN_HEIGHT = 1;
 	private static final long MAX_FILE_SIZE = 25 * 1024 * 1024; // Reduced from 50MB to 25MB
 
-	// Memory management constants
-	private static final int RECOMMENDED_BATCH_SIZE = 12; // 2x thread pool size
+	// Memory management constants; per-image admission is handled by MemoryBudget
 	private static final long MIN_FREE_MEMORY = 100 * 1024 * 1024; // 100MB minimum
 
 	/**
@@ -52,9 +58,11 @@ public class ConcurrentImageProcessor {
 		System.out.println("5. Performance Comparison (All Methods)");
 		System.out.println("6. Configure Processing Settings");
 		System.out.println("7. System Information");
+		System.out.println("8. Pipelined Processing (Virtual-Thread I/O)");
+		System.out.println("9. Auto-Tuned Processing (Per-Image Strategy)");
 		System.out.println("0. Exit");
 		System.out.println("=".repeat(60));
-		System.out.print("Choose an option (0-7): ");
+		System.out.print("Choose an option (0-9): ");
 	}
 
 	/**
@@ -75,8 +83,12 @@ public class ConcurrentImageProcessor {
 		System.out.println("Max Memory: " + (maxMemory / 1024 / 1024) + " MB");
 		System.out.println("Used Memory: " + (usedMemory / 1024 / 1024) + " MB");
 		System.out.println("Free Memory: " + (freeMemory / 1024 / 1024) + " MB");
-		System.out.println("Thread Pool Size: " + THREAD_POOL_SIZE + " (Fixed)");
-		System.out.println("Recommended Batch Size: " + RECOMMENDED_BATCH_SIZE);
+		System.out.println("Thread Pool Size: " + THREAD_POOL_SIZE + " (Shared)");
+		System.out.println("Image Memory Budget: " + (MemoryBudget.get().getBudgetBytes() / 1024 / 1024) + " MB");
+		System.out.println("Buffer Pool Limit: " + (BufferPool.get().getMaxRetainedBytes() / 1024 / 1024) + " MB");
+		System.out.println("Images In Flight: " + ConcurrencyController.get().getLimit() + " (max "
+				+ ConcurrencyController.get().getMaxLimit() + ", "
+				+ (ConcurrencyController.get().isAdaptive() ? "adaptive" : "fixed") + ")");
 
 		// Memory status warning
 		if (freeMemory < MIN_FREE_MEMORY) {
@@ -132,6 +144,8 @@ public class ConcurrentImageProcessor {
 		int width = getIntInput(scanner, 0, MAX_IMAGE_DIMENSION);
 
 		int height = 0;
+		ResampleFilter resampleFilter = ResampleFilter.LANCZOS3;
+		FitMode fitMode = FitMode.EXACT;
 		if (width > 0) {
 			System.out.print("Target height (min " + MIN_HEIGHT + ", max " + MAX_IMAGE_DIMENSION + "): ");
 			height = getIntInput(scanner, MIN_HEIGHT, MAX_IMAGE_DIMENSION);
@@ -140,12 +154,24 @@ public class ConcurrentImageProcessor {
 			if (width > 4000 || height > 4000) {
 				System.out.println("⚠️  Large dimensions may consume significant memory with parallel processing.");
 			}
+
+			ResampleFilter[] resampleFilters = ResampleFilter.values();
+			System.out.print("Resample filter (" + formatChoices(resampleFilters) + "): ");
+			resampleFilter = resampleFilters[getIntInput(scanner, 1, resampleFilters.length) - 1];
+
+			FitMode[] fitModes = FitMode.values();
+			System.out.print("Aspect mode (" + formatChoices(fitModes) + "): ");
+			fitMode = fitModes[getIntInput(scanner, 1, fitModes.length) - 1];
 		}
 
 		// Compression quality
 		System.out.print("Compression quality (0.1-1.0): ");
 		float quality = getFloatInput(scanner, 0.1f, 1.0f);
 
+		// Optional renditions: several sizes written from one decode of each input
+		System.out.print("Renditions (name:WxH[:quality[:format[:fit]]], comma-separated, empty for one output): ");
+		List<Rendition> renditions = parseRenditions(scanner.nextLine().trim(), quality);
+
 		// Tile parallelism with memory consideration
 		System.out.print("Use tile-level parallelism for large images? (y/n): ");
 		boolean useTileParallelism = getBooleanInput(scanner);
@@ -154,7 +180,44 @@ public class ConcurrentImageProcessor {
 			System.out.println("ℹ️  Tile parallelism helps manage memory for large images.");
 		}
 
-		return new ProcessingConfig(selectedFilters, width, height, quality, useTileParallelism);
+		return new ProcessingConfig(selectedFilters, width, height, quality, useTileParallelism,
+				resampleFilter, fitMode, renditions);
+	}
+
+	/**
+	 * Parse rendition specs such as "thumb:160x160:0.7:jpg,large:1600x1200", skipping invalid
+	 * or duplicate entries
+	 */
+	private static List<Rendition> parseRenditions(String input, float defaultQuality) {
+		List<Rendition> renditions = new ArrayList<>();
+		Set<String> names = new HashSet<>();
+		for (String spec : input.split(",")) {
+			if (spec.trim().isEmpty()) {
+				continue;
+			}
+			try {
+				Rendition rendition = Rendition.parse(spec, defaultQuality);
+				if (names.add(rendition.getName())) {
+					renditions.add(rendition);
+				} else {
+					LOGGER.warning("Duplicate rendition name: " + rendition.getName());
+				}
+			} catch (IllegalArgumentException e) {
+				LOGGER.warning("Invalid rendition: " + e.getMessage());
+			}
+		}
+		return renditions;
+	}
+
+	/**
+	 * Format enum constants as a numbered choice list, e.g. "1=FIT, 2=FILL"
+	 */
+	private static String formatChoices(Enum<?>[] values) {
+		List<String> choices = new ArrayList<>();
+		for (int i = 0; i < values.length; i++) {
+			choices.add((i + 1) + "=" + values[i]);
+		}
+		return String.join(", ", choices);
 	}
 
 	/**
@@ -276,7 +339,8 @@ public class ConcurrentImageProcessor {
 		System.out.println("\n=== CURRENT CONFIGURATION ===");
 		System.out.println("Filters: " + config.getFilters());
 		if (config.getTargetWidth() > 0) {
-			System.out.printf("Resize: %dx%d%n", config.getTargetWidth(), config.getTargetHeight());
+			System.out.printf("Resize: %dx%d (%s, %s)%n", config.getTargetWidth(), config.getTargetHeight(),
+					config.getResampleFilter(), config.getFitMode());
 
 			// Estimate memory usage
 			long pixelCount = (long) config.getTargetWidth() * config.getTargetHeight();
@@ -286,9 +350,15 @@ public class ConcurrentImageProcessor {
 			System.out.println("Resize: No resizing");
 		}
 		System.out.printf("Compression Quality: %.1f%n", config.getCompressionQuality());
+		if (config.hasRenditions()) {
+			System.out.println("Renditions (one decode per input, replacing the resize above):");
+			for (Rendition rendition : config.getRenditions()) {
+				System.out.println("  " + rendition);
+			}
+		}
 		System.out.println("Tile Parallelism: " + (config.isUseTileParallelism() ? "Enabled" : "Disabled"));
-		System.out.printf("Thread Pool Size: %d (Fixed)%n", THREAD_POOL_SIZE);
-		System.out.printf("Processing Strategy: Batch processing with controlled thread pool%n");
+		System.out.printf("Thread Pool Size: %d (Shared)%n", THREAD_POOL_SIZE);
+		System.out.printf("Processing Strategy: Staged pipeline (decode -> filter -> encode) linked by bounded queues, filters on a shared work-stealing pool%n");
 	}
 
 	/**
@@ -312,54 +382,20 @@ public class ConcurrentImageProcessor {
 	private static List<Path> findImageFiles(Path inputDir) {
 		List<Path> imagePaths = new ArrayList<>();
 
-		if (!Files.exists(inputDir)) {
-			LOGGER.warning("Input directory does not exist: " + inputDir);
-			return imagePaths;
-		}
-
-		try {
-			Files.walkFileTree(inputDir, new SimpleFileVisitor<Path>() {
-				@Override
-				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-					// Security: Check file size to prevent processing huge files
-					if (attrs.size() > MAX_FILE_SIZE) {
-						LOGGER.warning("Skipping large file: " + file + " (size: " + attrs.size() + " bytes)");
-						return FileVisitResult.CONTINUE;
-					}
-
-					// Check if it's a supported image format
-					String extension = ImageUtils.getFileExtension(file).toLowerCase();
-					if (Arrays.asList(ImageUtils.getSupportedFormats()).contains(extension)) {
-						imagePaths.add(file);
-					}
-
-					return FileVisitResult.CONTINUE;
-				}
-
-				@Override
-				public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-					LOGGER.warning("Could not access file: " + file + " - " + exc.getMessage());
-					return FileVisitResult.CONTINUE;
-				}
-			});
-
-		} catch (IOException e) {
-			LOGGER.severe("Error scanning input directory: " + e.getMessage());
+		// Same parallel walk the streaming modes use, drained to a list before processing starts
+		try (ImageDiscovery discovery = ImageDiscovery.start(inputDir, MAX_FILE_SIZE)) {
+			Path imagePath;
+			while ((imagePath = discovery.next()) != null) {
+				imagePaths.add(imagePath);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.severe("Interrupted while scanning input directory");
 		}
 
 		// Sort for consistent processing order
 		imagePaths.sort(Comparator.comparing(Path::getFileName));
 
-		// Memory check and warning
-		Runtime runtime = Runtime.getRuntime();
-		long freeMemory = runtime.freeMemory();
-		int imageCount = imagePaths.size();
-
-		if (imageCount > RECOMMENDED_BATCH_SIZE && freeMemory < MIN_FREE_MEMORY * 2) {
-			System.out.printf("⚠️  Found %d images with limited memory. Processing will use batches of %d.%n",
-					imageCount, RECOMMENDED_BATCH_SIZE);
-		}
-
 		return imagePaths;
 	}
 
@@ -388,7 +424,7 @@ public class ConcurrentImageProcessor {
 				seqResults.imagesProcessed, seqResults.failedImages);
 
 		System.out.printf("%-25s | %8.2f | %8.1fx | %8d | %8d%n",
-				"Parallel (Fixed Pool)", parTimeSeconds, seqTimeSeconds / parTimeSeconds,
+				"Parallel (Shared Pool)", parTimeSeconds, seqTimeSeconds / parTimeSeconds,
 				parResults.imagesProcessed, parResults.failedImages);
 
 		System.out.printf("%-25s | %8.2f | %8.1fx | %8d | %8d%n",
@@ -396,7 +432,7 @@ public class ConcurrentImageProcessor {
 				vectorResults.imagesProcessed, vectorResults.failedImages);
 
 		System.out.printf("%-25s | %8.2f | %8.1fx | %8d | %8d%n",
-				"Hybrid (Vec+Par Fixed)", hybridTimeSeconds, seqTimeSeconds / hybridTimeSeconds,
+				"Hybrid (Vec+Par Shared)", hybridTimeSeconds, seqTimeSeconds / hybridTimeSeconds,
 				hybridResults.imagesProcessed, hybridResults.failedImages);
 
 		System.out.println("=".repeat(80));
@@ -407,7 +443,7 @@ public class ConcurrentImageProcessor {
 		String bestMethod = "";
 
 		if (bestTime == seqTimeSeconds) bestMethod = "Sequential";
-		else if (bestTime == parTimeSeconds) bestMethod = "Parallel (Fixed Pool)";
+		else if (bestTime == parTimeSeconds) bestMethod = "Parallel (Shared Pool)";
 		else if (bestTime == vectorTimeSeconds) bestMethod = "Vector API";
 		else bestMethod = "Hybrid Vector+Parallel";
 
@@ -415,7 +451,7 @@ public class ConcurrentImageProcessor {
 
 		// Additional insights
 		System.out.println("\n--- Performance Insights ---");
-		System.out.printf("Thread Pool: Fixed size of %d threads for controlled memory usage%n", THREAD_POOL_SIZE);
+		System.out.printf("Thread Pool: Shared work-stealing pool of %d threads%n", THREAD_POOL_SIZE);
 		if (vectorTimeSeconds < seqTimeSeconds) {
 			System.out.println("✓ Vector API SIMD acceleration is effective");
 		}
@@ -428,7 +464,7 @@ public class ConcurrentImageProcessor {
 		}
 
 		// Memory efficiency note
-		System.out.println("✓ All parallel methods use fixed thread pools to prevent memory exhaustion");
+		System.out.println("✓ All parallel methods share one work-stealing pool sized to the available cores");
 	}
 
 	/**
@@ -461,13 +497,6 @@ public class ConcurrentImageProcessor {
 		System.out.printf("Available memory: %d MB%n", freeMemoryBefore / 1024 / 1024);
 		displayConfiguration(config);
 
-		// Suggest garbage collection before processing
-		if (freeMemoryBefore < MIN_FREE_MEMORY) {
-			System.out.println("Running garbage collection to free memory...");
-			System.gc();
-			Thread.yield();
-		}
-
 		String methodName = getMethodName(methodChoice);
 		System.out.printf("\n🚀 Starting %s processing...%n", methodName);
 
@@ -477,33 +506,66 @@ public class ConcurrentImageProcessor {
 				case 1:
 					stats = ImageProcessor.processImagesSequential(imagePaths, outputDir, config);
 					break;
-				case 2:
-					stats = ImageProcessor.processImagesParallel(imagePaths, outputDir, config);
-					break;
 				case 3:
 					stats = ImageProcessor.processImagesVector(imagePaths, outputDir, config);
 					break;
-				case 4:
-					stats = ImageProcessor.processImagesVectorParallel(imagePaths, outputDir, config);
-					break;
 				default:
 					System.out.println("Invalid processing method!");
 					return;
 			}
 
-			// Post-processing memory check
-			long freeMemoryAfter = runtime.freeMemory();
+			displayResults(stats, outputDir, freeMemoryBefore);
+
+		} catch (OutOfMemoryError e) {
+			System.err.println("❌ Out of memory error! Try reducing image count, size, or number of filters.");
+			System.err.println("Current configuration may be too demanding for available memory.");
+		} catch (Exception e) {
+			LOGGER.severe("Error during processing: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Run one of the pipelined methods while the input directory is still being scanned,
+	 * so the first images are decoded as soon as they are found
+	 */
+	private static void processStreamingWithMethod(Path inputDir, Path outputDir,
+	                                               ProcessingConfig config, int methodChoice) {
+		Runtime runtime = Runtime.getRuntime();
+		long freeMemoryBefore = runtime.freeMemory();
+
+		System.out.printf("Available memory: %d MB%n", freeMemoryBefore / 1024 / 1024);
+		displayConfiguration(config);
+
+		String methodName = getMethodName(methodChoice);
+		System.out.printf("\n🚀 Starting %s processing (streaming input discovery)...%n", methodName);
 
-			System.out.println("\n=== PROCESSING COMPLETE ===");
-			System.out.println(stats);
-			System.out.println("Output directory: " + outputDir);
-			System.out.printf("Memory before: %d MB, after: %d MB%n",
-					freeMemoryBefore / 1024 / 1024, freeMemoryAfter / 1024 / 1024);
+		try (ImageDiscovery discovery = ImageDiscovery.start(inputDir, MAX_FILE_SIZE)) {
+			ProcessingStats stats;
+			switch (methodChoice) {
+				case 2:
+					stats = ImageProcessor.processImagesParallel(discovery, outputDir, config);
+					break;
+				case 4:
+					stats = ImageProcessor.processImagesVectorParallel(discovery, outputDir, config);
+					break;
+				case 8:
+					stats = ImageProcessor.processImagesVirtualIO(discovery, outputDir, config);
+					break;
+				case 9:
+					stats = ImageProcessor.processImagesAuto(discovery, outputDir, config);
+					break;
+				default:
+					System.out.println("Invalid processing method!");
+					return;
+			}
 
-			if (stats.failedImages > 0) {
-				System.out.printf("⚠️  %d images failed to process (possibly due to memory constraints)%n",
-						stats.failedImages);
+			if (discovery.getDiscoveredCount() == 0) {
+				System.out.println("No images found to process!");
+				return;
 			}
+			System.out.printf("Discovered %d images%n", discovery.getDiscoveredCount());
+			displayResults(stats, outputDir, freeMemoryBefore);
 
 		} catch (OutOfMemoryError e) {
 			System.err.println("❌ Out of memory error! Try reducing image count, size, or number of filters.");
@@ -514,15 +576,38 @@ public class ConcurrentImageProcessor {
 		}
 	}
 
+	/**
+	 * Print the outcome of a processing run with the memory delta
+	 */
+	private static void displayResults(ProcessingStats stats, Path outputDir, long freeMemoryBefore) {
+		// Post-processing memory check
+		long freeMemoryAfter = Runtime.getRuntime().freeMemory();
+
+		System.out.println("\n=== PROCESSING COMPLETE ===");
+		System.out.println(stats);
+		System.out.println("Output directory: " + outputDir);
+		System.out.printf("Memory before: %d MB, after: %d MB%n",
+				freeMemoryBefore / 1024 / 1024, freeMemoryAfter / 1024 / 1024);
+		System.out.println(BufferPool.get());
+		System.out.println(ConcurrencyController.get());
+
+		if (stats.failedImages > 0) {
+			System.out.printf("⚠️  %d images failed to process (possibly due to memory constraints)%n",
+					stats.failedImages);
+		}
+	}
+
 	/**
 	 * Get method name for display
 	 */
 	private static String getMethodName(int methodChoice) {
 		switch (methodChoice) {
 			case 1: return "Sequential";
-			case 2: return "Parallel (Fixed Pool)";
+			case 2: return "Parallel (Shared Pool)";
 			case 3: return "Vector API";
 			case 4: return "Hybrid Vector+Parallel";
+			case 8: return "Pipelined (Virtual-Thread I/O)";
+			case 9: return "Auto-Tuned";
 			default: return "Unknown";
 		}
 	}
@@ -556,23 +641,21 @@ public class ConcurrentImageProcessor {
 
 		displayConfiguration(config);
 
+		// Timings must reflect real work, so cached results are not reused here
+		ResultCache.setEnabled(false);
 		try {
 			// Run all processing methods with memory monitoring
 			System.out.println("\n--- Sequential Processing ---");
 			ProcessingStats seqStats = ImageProcessor.processImagesSequential(imagePaths, outputDir, config);
-			forceGarbageCollection();
 
-			System.out.println("\n--- Parallel Processing (Fixed Pool) ---");
+			System.out.println("\n--- Parallel Processing (Shared Pool) ---");
 			ProcessingStats parStats = ImageProcessor.processImagesParallel(imagePaths, outputDir, config);
-			forceGarbageCollection();
 
 			System.out.println("\n--- Vector API Processing ---");
 			ProcessingStats vectorStats = ImageProcessor.processImagesVector(imagePaths, outputDir, config);
-			forceGarbageCollection();
 
 			System.out.println("\n--- Hybrid Vector+Parallel Processing ---");
 			ProcessingStats hybridStats = ImageProcessor.processImagesVectorParallel(imagePaths, outputDir, config);
-			forceGarbageCollection();
 
 			// Display comprehensive comparison
 			displayPerformanceComparison(seqStats, parStats, vectorStats, hybridStats);
@@ -583,18 +666,8 @@ public class ConcurrentImageProcessor {
 		} catch (Exception e) {
 			LOGGER.severe("Error during performance comparison: " + e.getMessage());
 			e.printStackTrace();
-		}
-	}
-
-	/**
-	 * Force garbage collection and give it time to work
-	 */
-	private static void forceGarbageCollection() {
-		System.gc();
-		try {
-			Thread.sleep(1000); // Give GC time to work
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
+		} finally {
+			ResultCache.setEnabled(null);
 		}
 	}
 
@@ -634,7 +707,7 @@ public class ConcurrentImageProcessor {
 			try {
 				String input = scanner.nextLine().trim();
 				if (input.isEmpty()) {
-					System.out.print("Please enter your choice (0-7): ");
+					System.out.print("Please enter your choice (0-9): ");
 					continue;
 				}
 
@@ -653,7 +726,7 @@ public class ConcurrentImageProcessor {
 	 * Main method - Entry point for the application
 	 */
 	public static void main(String[] args) {
-		System.out.println("🚀 Starting Concurrent Image Processor with Fixed Thread Pool Management...");
+		System.out.println("🚀 Starting Concurrent Image Processor with Shared Thread Pool Management...");
 		System.out.printf("Using %d threads for optimal memory usage%n", THREAD_POOL_SIZE);
 
 		// Setup environment and validate directories
@@ -678,7 +751,7 @@ public class ConcurrentImageProcessor {
 		}
 
 		// Display initial system info
-		System.out.printf("Fixed thread pool size: %d threads%n", THREAD_POOL_SIZE);
+		System.out.printf("Shared thread pool size: %d threads%n", THREAD_POOL_SIZE);
 		System.out.printf("Available memory: %d MB%n", Runtime.getRuntime().freeMemory() / 1024 / 1024);
 
 		// Main application loop
@@ -690,13 +763,19 @@ public class ConcurrentImageProcessor {
 
 				switch (choice) {
 					case 1: // Sequential Processing
-					case 2: // Parallel Processing
 					case 3: // Vector API Processing
-					case 4: // Hybrid Processing
 						List<Path> imagePaths = findImageFiles(inputDir);
 						processWithMethod(imagePaths, outputDir, currentConfig, choice);
 						break;
 
+					case 2: // Parallel Processing
+					case 4: // Hybrid Processing
+					case 8: // Virtual-thread I/O Processing
+					case 9: // Auto-tuned Processing
+						// Pipelined methods start on the first images while the walk continues
+						processStreamingWithMethod(inputDir, outputDir, currentConfig, choice);
+						break;
+
 					case 5: // Performance Comparison
 						List<Path> comparisonImages = findImageFiles(inputDir);
 						runPerformanceComparison(comparisonImages, outputDir, currentConfig);
@@ -722,21 +801,13 @@ public class ConcurrentImageProcessor {
 				}
 
 				if (running && choice != 0) {
-					// Force garbage collection between operations
-					System.gc();
 					System.out.println("\nPress Enter to continue...");
 					scanner.nextLine();
 				}
 
 			} catch (OutOfMemoryError e) {
 				System.err.println("❌ Out of memory error in main loop!");
-				System.err.println("Forcing garbage collection...");
-				System.gc();
-				try {
-					Thread.sleep(2000);
-				} catch (InterruptedException ie) {
-					Thread.currentThread().interrupt();
-				}
+				System.err.println("Lower -Dimageprocessor.memory.budgetMB or raise -Xmx and try again.");
 				System.out.println("Press Enter to continue...");
 				scanner.nextLine();
 			} catch (Exception e) {
@@ -751,4 +822,4 @@ public class ConcurrentImageProcessor {
 		scanner.close();
 		System.out.println("🎯 Application terminated successfully.");
 	}
-}
\ No newline at end of file
+}
@@ -1,8 +1,14 @@
 package config;
 
 import model.FilterType;
+import model.FitMode;
+import model.ResampleFilter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 /**
  * Image processing task configuration
@@ -13,14 +19,45 @@ public class ProcessingConfig {
 	private final int targetHeight;
 	private final float compressionQuality;
 	private final boolean useTileParallelism;
+	private final ResampleFilter resampleFilter;
+	private final FitMode fitMode;
+	private final List<Rendition> renditions;
 
 	public ProcessingConfig(List<FilterType> filters, int targetWidth, int targetHeight,
 	                        float compressionQuality, boolean useTileParallelism) {
+		this(filters, targetWidth, targetHeight, compressionQuality, useTileParallelism,
+				ResampleFilter.LANCZOS3, FitMode.EXACT);
+	}
+
+	public ProcessingConfig(List<FilterType> filters, int targetWidth, int targetHeight,
+	                        float compressionQuality, boolean useTileParallelism,
+	                        ResampleFilter resampleFilter, FitMode fitMode) {
+		this(filters, targetWidth, targetHeight, compressionQuality, useTileParallelism,
+				resampleFilter, fitMode, Collections.emptyList());
+	}
+
+	/**
+	 * With renditions every input is decoded and filtered once and written once per rendition;
+	 * the target size, quality and fit mode then only apply when the list is empty
+	 */
+	public ProcessingConfig(List<FilterType> filters, int targetWidth, int targetHeight,
+	                        float compressionQuality, boolean useTileParallelism,
+	                        ResampleFilter resampleFilter, FitMode fitMode, List<Rendition> renditions) {
 		this.filters = new ArrayList<>(filters);
 		this.targetWidth = targetWidth;
 		this.targetHeight = targetHeight;
 		this.compressionQuality = Math.max(0.1f, Math.min(1.0f, compressionQuality));
 		this.useTileParallelism = useTileParallelism;
+		this.resampleFilter = resampleFilter;
+		this.fitMode = fitMode;
+		this.renditions = new ArrayList<>(renditions);
+		Set<String> names = new HashSet<>();
+		for (Rendition rendition : renditions) {
+			// Names become part of output file names, so two renditions cannot share one
+			if (!names.add(rendition.getName())) {
+				throw new IllegalArgumentException("Duplicate rendition name: " + rendition.getName());
+			}
+		}
 	}
 
 	// Getters
@@ -43,4 +80,68 @@ public class ProcessingConfig {
 	public boolean isUseTileParallelism() {
 		return useTileParallelism;
 	}
-}
\ No newline at end of file
+
+	public ResampleFilter getResampleFilter() {
+		return resampleFilter;
+	}
+
+	public FitMode getFitMode() {
+		return fitMode;
+	}
+
+	public List<Rendition> getRenditions() {
+		return Collections.unmodifiableList(renditions);
+	}
+
+	public boolean hasRenditions() {
+		return !renditions.isEmpty();
+	}
+
+	/**
+	 * Largest output width, which bounds how far the decoder may subsample
+	 */
+	public int getDecodeWidth() {
+		if (renditions.isEmpty()) {
+			return targetWidth;
+		}
+		int width = 0;
+		for (Rendition rendition : renditions) {
+			width = Math.max(width, rendition.getWidth());
+		}
+		return width;
+	}
+
+	/**
+	 * Largest output height, which bounds how far the decoder may subsample
+	 */
+	public int getDecodeHeight() {
+		if (renditions.isEmpty()) {
+			return targetHeight;
+		}
+		int height = 0;
+		for (Rendition rendition : renditions) {
+			height = Math.max(height, rendition.getHeight());
+		}
+		return height;
+	}
+
+	/**
+	 * Canonical description of every setting that affects output pixels or encoding
+	 */
+	public String getCanonicalKey() {
+		List<String> names = new ArrayList<>();
+		for (FilterType filter : filters) {
+			names.add(filter.name());
+		}
+		String key = String.format(Locale.ROOT, "filters=%s|size=%dx%d|quality=%.3f|resample=%s|fit=%s",
+				String.join(",", names), targetWidth, targetHeight, compressionQuality, resampleFilter, fitMode);
+		if (renditions.isEmpty()) {
+			return key;
+		}
+		List<String> outputs = new ArrayList<>();
+		for (Rendition rendition : renditions) {
+			outputs.add(rendition.getCanonicalKey());
+		}
+		return key + "|renditions=" + String.join(",", outputs);
+	}
+}
@@ -0,0 +1,131 @@
+package config;
+
+import model.FitMode;
+import util.ImageUtils;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * One named output size derived from every input, e.g. a thumbnail, with its own
+ * quality, output format and fit mode
+ */
+public class Rendition {
+
+	// Names become part of output file names
+	private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+	private final String name;
+	private final int width;
+	private final int height;
+	private final float quality;
+	private final String format;
+	private final FitMode fitMode;
+
+	/**
+	 * Rendition that keeps the input's format and fits inside the box
+	 */
+	public Rendition(String name, int width, int height, float quality) {
+		this(name, width, height, quality, null, FitMode.FIT);
+	}
+
+	/**
+	 * format is one of ImageUtils.getSupportedFormats() such as "jpg" or "png", or null to keep the input's
+	 */
+	public Rendition(String name, int width, int height, float quality, String format, FitMode fitMode) {
+		if (name == null || !NAME.matcher(name).matches()) {
+			throw new IllegalArgumentException("Invalid rendition name: " + name);
+		}
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Rendition " + name + " needs a positive size");
+		}
+		String normalizedFormat = format == null ? null : format.toLowerCase(Locale.ROOT);
+		// The encoder would fall back to jpg for anything else and write it under the wrong extension
+		if (normalizedFormat != null && !Arrays.asList(ImageUtils.getSupportedFormats()).contains(normalizedFormat)) {
+			throw new IllegalArgumentException("Unsupported format for rendition " + name + ": " + format
+					+ " (supported: " + String.join(", ", ImageUtils.getSupportedFormats()) + ")");
+		}
+		this.name = name;
+		this.width = width;
+		this.height = height;
+		this.quality = Math.max(0.1f, Math.min(1.0f, quality));
+		this.format = normalizedFormat;
+		this.fitMode = fitMode;
+	}
+
+	/**
+	 * Parse "name:WIDTHxHEIGHT[:quality[:format[:fit]]]", e.g. "thumb:160x160:0.7:jpg:FILL"
+	 */
+	public static Rendition parse(String spec, float defaultQuality) {
+		String[] parts = spec.trim().split(":");
+		if (parts.length < 2 || parts.length > 5) {
+			throw new IllegalArgumentException("Expected name:WIDTHxHEIGHT[:quality[:format[:fit]]], got " + spec);
+		}
+		String[] size = parts[1].toLowerCase(Locale.ROOT).split("x");
+		if (size.length != 2) {
+			throw new IllegalArgumentException("Invalid rendition size: " + parts[1]);
+		}
+		try {
+			int width = Integer.parseInt(size[0].trim());
+			int height = Integer.parseInt(size[1].trim());
+			float quality = parts.length > 2 && !parts[2].isEmpty() ? Float.parseFloat(parts[2]) : defaultQuality;
+			String format = parts.length > 3 && !parts[3].isEmpty() ? parts[3] : null;
+			FitMode fitMode = parts.length > 4 ? FitMode.valueOf(parts[4].trim().toUpperCase(Locale.ROOT)) : FitMode.FIT;
+			return new Rendition(parts[0].trim(), width, height, quality, format, fitMode);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number in rendition " + spec, e);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public float getQuality() {
+		return quality;
+	}
+
+	/**
+	 * Output extension, or null to keep the input's
+	 */
+	public String getFormat() {
+		return format;
+	}
+
+	public FitMode getFitMode() {
+		return fitMode;
+	}
+
+	/**
+	 * Output file name for an input file name: the input's base name with the rendition name appended
+	 */
+	public String getOutputFileName(String inputFileName) {
+		int dot = inputFileName.lastIndexOf('.');
+		String base = dot > 0 ? inputFileName.substring(0, dot) : inputFileName;
+		String extension = format != null ? format : dot > 0 ? inputFileName.substring(dot + 1) : "jpg";
+		return base + "_" + name + "." + extension;
+	}
+
+	/**
+	 * Canonical description of every setting that affects this rendition's output
+	 */
+	public String getCanonicalKey() {
+		return String.format(Locale.ROOT, "%s=%dx%d/%.3f/%s/%s", name, width, height, quality,
+				format == null ? "source" : format, fitMode);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%s %dx%d (%s, quality %.1f, %s)", name, width, height, fitMode, quality,
+				format == null ? "source format" : format);
+	}
+}
@@ -0,0 +1,66 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One fused filter stage applied to a whole image, including the wait for its bands or tiles
+ */
+@Name("imageprocessor.FilterStage")
+@Label("Filter Stage")
+@Category({"Image Processor", "Filters"})
+@Description("A fused filter stage applied to a whole image")
+public final class FilterStageEvent extends jdk.jfr.Event {
+
+	@Label("Image")
+	String path;
+
+	@Label("Pipeline")
+	String pipeline;
+
+	@Label("Filters")
+	@Description("Filters fused into the stage; the stencil is in brackets")
+	String filters;
+
+	@Label("Arithmetic")
+	String mode;
+
+	@Label("Split")
+	@Description("How the stage was split across threads: none, bands or tiles")
+	String split;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	/**
+	 * Create and begin the event; cheap when the event is disabled
+	 */
+	public static FilterStageEvent start() {
+		FilterStageEvent event = new FilterStageEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * End and commit the event if the recording wants it. The stage is described by its
+	 * toString, which is only built for events that are kept.
+	 */
+	public void finish(Object stage, Enum<?> arithmetic, String stageSplit, int imageWidth, int imageHeight) {
+		end();
+		if (shouldCommit()) {
+			path = ImageContext.describe(null);
+			pipeline = PipelineMetrics.current().getRun();
+			filters = stage.toString();
+			mode = arithmetic.name();
+			split = stageSplit;
+			width = imageWidth;
+			height = imageHeight;
+			commit();
+		}
+	}
+}
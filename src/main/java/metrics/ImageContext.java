@@ -0,0 +1,55 @@
+package metrics;
+
+import java.nio.file.Path;
+
+/**
+ * The image a thread is currently working on, so events raised deep in the filters and the
+ * resampler can name it. Pipelines enter it around each stage; entering restores the
+ * previous image when closed, so nested work (a pool worker helping another image) is safe.
+ */
+public final class ImageContext implements AutoCloseable {
+
+	private static final ThreadLocal<Path> CURRENT = new ThreadLocal<>();
+
+	private final Path previous;
+
+	private ImageContext(Path previous) {
+		this.previous = previous;
+	}
+
+	/**
+	 * Mark imagePath as the current image of this thread until the returned context is closed
+	 */
+	public static ImageContext enter(Path imagePath) {
+		ImageContext context = new ImageContext(CURRENT.get());
+		CURRENT.set(imagePath);
+		return context;
+	}
+
+	/**
+	 * Current image of this thread, or null outside any image
+	 */
+	public static Path current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Current image as event text, falling back to the given path and then to an empty string
+	 */
+	static String describe(Path fallback) {
+		Path path = CURRENT.get();
+		if (path == null) {
+			path = fallback;
+		}
+		return path == null ? "" : path.toString();
+	}
+
+	@Override
+	public void close() {
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+
+/**
+ * One image decoded from a file or from bytes read ahead, after decoder subsampling
+ */
+@Name("imageprocessor.ImageDecode")
+@Label("Image Decode")
+@Category({"Image Processor", "Pipeline"})
+@Description("An image decoded, after decoder subsampling")
+public final class ImageDecodeEvent extends jdk.jfr.Event {
+
+	@Label("Image")
+	String path;
+
+	@Label("Pipeline")
+	String pipeline;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	@Label("Encoded Size")
+	@DataAmount
+	long bytes;
+
+	/**
+	 * Create and begin the event; cheap when the event is disabled
+	 */
+	public static ImageDecodeEvent start() {
+		ImageDecodeEvent event = new ImageDecodeEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * End and commit the event if the recording wants it; image may be null when decoding failed
+	 */
+	public void finish(Path imagePath, long encodedBytes, BufferedImage image) {
+		end();
+		if (shouldCommit()) {
+			path = ImageContext.describe(imagePath);
+			pipeline = PipelineMetrics.current().getRun();
+			width = image == null ? 0 : image.getWidth();
+			height = image == null ? 0 : image.getHeight();
+			bytes = encodedBytes;
+			commit();
+		}
+	}
+}
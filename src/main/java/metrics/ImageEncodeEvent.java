@@ -0,0 +1,64 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+
+/**
+ * One processed image encoded, to a file or to memory
+ */
+@Name("imageprocessor.ImageEncode")
+@Label("Image Encode")
+@Category({"Image Processor", "Pipeline"})
+@Description("A processed image encoded to a file or to memory")
+public final class ImageEncodeEvent extends jdk.jfr.Event {
+
+	@Label("Image")
+	String path;
+
+	@Label("Pipeline")
+	String pipeline;
+
+	@Label("Format")
+	String format;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	@Label("Encoded Size")
+	@DataAmount
+	long bytes;
+
+	/**
+	 * Create and begin the event; cheap when the event is disabled
+	 */
+	public static ImageEncodeEvent start() {
+		ImageEncodeEvent event = new ImageEncodeEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * End and commit the event if the recording wants it
+	 */
+	public void finish(Path outputPath, String outputFormat, BufferedImage image, long encodedBytes) {
+		end();
+		if (shouldCommit()) {
+			path = ImageContext.describe(outputPath);
+			pipeline = PipelineMetrics.current().getRun();
+			format = outputFormat;
+			width = image.getWidth();
+			height = image.getHeight();
+			bytes = encodedBytes;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package metrics;
+
+import model.ProcessingStats;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes a finished run as &lt;run&gt;.json and &lt;run&gt;.prom. Each file is replaced
+ * atomically, so a Prometheus node_exporter textfile collector pointed at the directory
+ * never reads a partial file.
+ */
+final class MetricsExporter {
+
+	private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+	private MetricsExporter() {
+	}
+
+	static List<Path> export(PipelineMetrics metrics, ProcessingStats stats, long wallNanos, Path directory)
+			throws IOException {
+		Files.createDirectories(directory);
+		Path json = directory.resolve(metrics.getRun() + ".json");
+		Path prometheus = directory.resolve(metrics.getRun() + ".prom");
+		writeAtomically(json, toJson(metrics, stats, wallNanos));
+		writeAtomically(prometheus, toPrometheus(metrics, stats, wallNanos));
+		return Arrays.asList(json, prometheus);
+	}
+
+	private static void writeAtomically(Path target, String content) throws IOException {
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	static String toJson(PipelineMetrics metrics, ProcessingStats stats, long wallNanos) {
+		StringBuilder out = new StringBuilder();
+		out.append("{\n");
+		out.append("  \"run\": ").append(quote(metrics.getRun())).append(",\n");
+		out.append("  \"startedAt\": ").append(quote(Instant.ofEpochMilli(metrics.getStartMillis()).toString())).append(",\n");
+		out.append("  \"wallSeconds\": ").append(number(wallNanos / 1e9)).append(",\n");
+		out.append("  \"images\": {\"processed\": ").append(stats.imagesProcessed)
+				.append(", \"failed\": ").append(stats.failedImages)
+				.append(", \"cached\": ").append(stats.cachedImages).append("},\n");
+		out.append("  \"megapixelsPerSecond\": ").append(number(metrics.getMegapixelsPerSecond(wallNanos))).append(",\n");
+		out.append("  \"stages\": [");
+
+		List<PipelineMetrics.Stage> stages = metrics.getStages();
+		for (int i = 0; i < stages.size(); i++) {
+			PipelineMetrics.Stage stage = stages.get(i);
+			LatencyHistogram latency = stage.getLatency();
+			out.append(i == 0 ? "\n" : ",\n");
+			out.append("    {\"stage\": ").append(quote(stage.getName()))
+					.append(", \"count\": ").append(latency.getCount())
+					.append(", \"p50Ms\": ").append(millis(latency.getValueAtPercentile(50)))
+					.append(", \"p95Ms\": ").append(millis(latency.getValueAtPercentile(95)))
+					.append(", \"p99Ms\": ").append(millis(latency.getValueAtPercentile(99)))
+					.append(", \"maxMs\": ").append(millis(latency.getMax()))
+					.append(", \"meanMs\": ").append(number(latency.getMean() / 1e6))
+					.append(", \"bytesIn\": ").append(stage.getBytesIn())
+					.append(", \"bytesOut\": ").append(stage.getBytesOut())
+					.append(", \"megapixels\": ").append(number(stage.getPixels() / 1e6))
+					.append(", \"megapixelsPerSecond\": ").append(number(stage.getMegapixelsPerSecond()))
+					.append('}');
+		}
+		out.append(stages.isEmpty() ? "]\n" : "\n  ]\n");
+		out.append("}\n");
+		return out.toString();
+	}
+
+	static String toPrometheus(PipelineMetrics metrics, ProcessingStats stats, long wallNanos) {
+		StringBuilder out = new StringBuilder();
+		String run = "run=\"" + escapeLabel(metrics.getRun()) + "\"";
+
+		header(out, "imageprocessor_run_duration_seconds", "gauge", "Wall time of the last run");
+		out.append("imageprocessor_run_duration_seconds{").append(run).append("} ").append(number(wallNanos / 1e9)).append('\n');
+		header(out, "imageprocessor_run_images", "gauge", "Images in the last run by outcome");
+		out.append("imageprocessor_run_images{").append(run).append(",outcome=\"processed\"} ").append(stats.imagesProcessed).append('\n');
+		out.append("imageprocessor_run_images{").append(run).append(",outcome=\"failed\"} ").append(stats.failedImages).append('\n');
+		out.append("imageprocessor_run_images{").append(run).append(",outcome=\"cached\"} ").append(stats.cachedImages).append('\n');
+		header(out, "imageprocessor_run_megapixels_per_second", "gauge", "Decoded megapixels per second of wall time");
+		out.append("imageprocessor_run_megapixels_per_second{").append(run).append("} ")
+				.append(number(metrics.getMegapixelsPerSecond(wallNanos))).append('\n');
+
+		List<PipelineMetrics.Stage> stages = metrics.getStages();
+		header(out, "imageprocessor_stage_latency_seconds", "summary", "Latency of one stage execution");
+		for (PipelineMetrics.Stage stage : stages) {
+			LatencyHistogram latency = stage.getLatency();
+			String labels = run + ",stage=\"" + escapeLabel(stage.getName()) + "\"";
+			for (double quantile : QUANTILES) {
+				out.append("imageprocessor_stage_latency_seconds{").append(labels).append(",quantile=\"").append(quantile)
+						.append("\"} ").append(number(latency.getValueAtPercentile(quantile * 100) / 1e9)).append('\n');
+			}
+			out.append("imageprocessor_stage_latency_seconds_sum{").append(labels).append("} ")
+					.append(number(latency.getSum() / 1e9)).append('\n');
+			out.append("imageprocessor_stage_latency_seconds_count{").append(labels).append("} ")
+					.append(latency.getCount()).append('\n');
+		}
+
+		header(out, "imageprocessor_stage_latency_max_seconds", "gauge", "Slowest stage execution");
+		for (PipelineMetrics.Stage stage : stages) {
+			out.append("imageprocessor_stage_latency_max_seconds{").append(run).append(",stage=\"")
+					.append(escapeLabel(stage.getName())).append("\"} ")
+					.append(number(stage.getLatency().getMax() / 1e9)).append('\n');
+		}
+		header(out, "imageprocessor_stage_bytes_in_total", "counter", "Encoded bytes read by the stage");
+		for (PipelineMetrics.Stage stage : stages) {
+			out.append("imageprocessor_stage_bytes_in_total{").append(run).append(",stage=\"")
+					.append(escapeLabel(stage.getName())).append("\"} ").append(stage.getBytesIn()).append('\n');
+		}
+		header(out, "imageprocessor_stage_bytes_out_total", "counter", "Encoded bytes written by the stage");
+		for (PipelineMetrics.Stage stage : stages) {
+			out.append("imageprocessor_stage_bytes_out_total{").append(run).append(",stage=\"")
+					.append(escapeLabel(stage.getName())).append("\"} ").append(stage.getBytesOut()).append('\n');
+		}
+		header(out, "imageprocessor_stage_megapixels_per_second", "gauge", "Megapixels per second of time spent in the stage");
+		for (PipelineMetrics.Stage stage : stages) {
+			out.append("imageprocessor_stage_megapixels_per_second{").append(run).append(",stage=\"")
+					.append(escapeLabel(stage.getName())).append("\"} ")
+					.append(number(stage.getMegapixelsPerSecond())).append('\n');
+		}
+		return out.toString();
+	}
+
+	private static void header(StringBuilder out, String name, String type, String help) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static String millis(long nanos) {
+		return number(nanos / 1e6);
+	}
+
+	private static String number(double value) {
+		return String.format(Locale.ROOT, "%.6f", value);
+	}
+
+	private static String quote(String value) {
+		StringBuilder out = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			switch (c) {
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				default:
+					if (c < 0x20) {
+						out.append(String.format("\\u%04x", (int) c));
+					} else {
+						out.append(c);
+					}
+			}
+		}
+		return out.append('"').toString();
+	}
+
+	private static String escapeLabel(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,214 @@
+package metrics;
+
+import model.ProcessingStats;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Per-stage metrics of one processing run: a latency histogram plus bytes and pixel totals for
+ * read, decode, each filter stage, resize, encode and write. Workers record into the current run
+ * from any thread without locks. Recordings outside a run go to an idle instance that is never
+ * exported. At the end of a run a summary is printed and the metrics are written as a JSON report
+ * and a Prometheus text file.
+ *
+ * Settings come from system properties:
+ * imageprocessor.metrics (true/false, default true),
+ * imageprocessor.metrics.dir (default "metrics").
+ */
+public final class PipelineMetrics {
+
+	private static final Logger LOGGER = Logger.getLogger(PipelineMetrics.class.getName());
+
+	public static final String READ = "read";
+	public static final String DECODE = "decode";
+	public static final String FILTER_PREFIX = "filter:";
+	public static final String RESIZE = "resize";
+	public static final String ENCODE = "encode";
+	public static final String WRITE = "write";
+
+	private static volatile PipelineMetrics current = new PipelineMetrics("idle");
+
+	/**
+	 * Totals for one stage; all updates are lock-free
+	 */
+	public static final class Stage {
+		private final String name;
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final LongAdder bytesIn = new LongAdder();
+		private final LongAdder bytesOut = new LongAdder();
+		private final LongAdder pixels = new LongAdder();
+
+		private Stage(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Record one execution of the stage: its latency, the encoded bytes it read and wrote
+		 * and the pixels it processed (0 where a value does not apply)
+		 */
+		public void record(long nanos, long bytesRead, long bytesWritten, long pixelCount) {
+			latency.record(nanos);
+			bytesIn.add(bytesRead);
+			bytesOut.add(bytesWritten);
+			pixels.add(pixelCount);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+
+		public long getBytesIn() {
+			return bytesIn.sum();
+		}
+
+		public long getBytesOut() {
+			return bytesOut.sum();
+		}
+
+		public long getPixels() {
+			return pixels.sum();
+		}
+
+		/**
+		 * Pixels per second of time spent in the stage, summed over all threads, in megapixels
+		 */
+		public double getMegapixelsPerSecond() {
+			long busy = latency.getSum();
+			return busy == 0 ? 0 : getPixels() / 1e6 / (busy / 1e9);
+		}
+	}
+
+	private final String run;
+	private final long startNanos = System.nanoTime();
+	private final long startMillis = System.currentTimeMillis();
+	private final Map<String, Stage> stages = new ConcurrentHashMap<>();
+
+	private PipelineMetrics(String run) {
+		this.run = run;
+	}
+
+	/**
+	 * Begin a run; it becomes the current run that stages record into
+	 */
+	public static PipelineMetrics start(String run) {
+		PipelineMetrics metrics = new PipelineMetrics(run);
+		current = metrics;
+		return metrics;
+	}
+
+	public static PipelineMetrics current() {
+		return current;
+	}
+
+	/**
+	 * Shorthand for current().stage(name)
+	 */
+	public static Stage stageOf(String name) {
+		return current.stage(name);
+	}
+
+	public Stage stage(String name) {
+		Stage stage = stages.get(name);
+		return stage != null ? stage : stages.computeIfAbsent(name, Stage::new);
+	}
+
+	public String getRun() {
+		return run;
+	}
+
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	/**
+	 * Stages in pipeline order: read, decode, filters, resize, encode, write
+	 */
+	public List<Stage> getStages() {
+		List<Stage> ordered = new ArrayList<>(stages.values());
+		ordered.sort(Comparator.comparingInt((Stage s) -> rank(s.getName())).thenComparing(Stage::getName));
+		return ordered;
+	}
+
+	private static int rank(String stage) {
+		if (stage.startsWith(FILTER_PREFIX)) {
+			return 2;
+		}
+		switch (stage) {
+			case READ: return 0;
+			case DECODE: return 1;
+			case RESIZE: return 3;
+			case ENCODE: return 4;
+			case WRITE: return 5;
+			default: return 6;
+		}
+	}
+
+	/**
+	 * End the run: print the stage summary and export the JSON and Prometheus files
+	 */
+	public void finish(ProcessingStats stats) {
+		long wallNanos = System.nanoTime() - startNanos;
+		if (current == this) {
+			current = new PipelineMetrics("idle");
+		}
+
+		printSummary(wallNanos);
+		if (!Boolean.parseBoolean(System.getProperty("imageprocessor.metrics", "true"))) {
+			return;
+		}
+		Path directory = Paths.get(System.getProperty("imageprocessor.metrics.dir", "metrics"));
+		try {
+			List<Path> written = MetricsExporter.export(this, stats, wallNanos, directory);
+			System.out.println("Metrics written to " + written);
+		} catch (IOException e) {
+			LOGGER.warning("Could not write metrics for " + run + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Pixels recorded so far by a stage, 0 when it has not run
+	 */
+	public long getPixels(String stageName) {
+		Stage stage = stages.get(stageName);
+		return stage == null ? 0 : stage.getPixels();
+	}
+
+	/**
+	 * Megapixels decoded per second of wall time over the whole run
+	 */
+	public double getMegapixelsPerSecond(long wallNanos) {
+		Stage decode = stages.get(DECODE);
+		return decode == null || wallNanos <= 0 ? 0 : decode.getPixels() / 1e6 / (wallNanos / 1e9);
+	}
+
+	private void printSummary(long wallNanos) {
+		List<Stage> ordered = getStages();
+		if (ordered.isEmpty()) {
+			return;
+		}
+		System.out.printf("%-32s %7s %9s %9s %9s %9s %9s%n",
+				"Stage latency (ms)", "count", "p50", "p95", "p99", "max", "MP/s");
+		for (Stage stage : ordered) {
+			LatencyHistogram latency = stage.getLatency();
+			System.out.printf("%-32s %7d %9.2f %9.2f %9.2f %9.2f %9.1f%n",
+					stage.getName(), latency.getCount(),
+					latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(95) / 1e6,
+					latency.getValueAtPercentile(99) / 1e6, latency.getMax() / 1e6,
+					stage.getMegapixelsPerSecond());
+		}
+		System.out.printf("Run throughput: %.1f MP/s%n", getMegapixelsPerSecond(wallNanos));
+	}
+}
@@ -0,0 +1,65 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One separable resize, both passes included
+ */
+@Name("imageprocessor.Resize")
+@Label("Resize")
+@Category({"Image Processor", "Resize"})
+@Description("A separable resize of one image, both passes included")
+public final class ResizeEvent extends jdk.jfr.Event {
+
+	@Label("Image")
+	String path;
+
+	@Label("Pipeline")
+	String pipeline;
+
+	@Label("Resample Filter")
+	String filter;
+
+	@Label("Source Width")
+	@Description("Width of the source region read, after any fill crop")
+	int sourceWidth;
+
+	@Label("Source Height")
+	int sourceHeight;
+
+	@Label("Target Width")
+	int targetWidth;
+
+	@Label("Target Height")
+	int targetHeight;
+
+	/**
+	 * Create and begin the event; cheap when the event is disabled
+	 */
+	public static ResizeEvent start() {
+		ResizeEvent event = new ResizeEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * End and commit the event if the recording wants it
+	 */
+	public void finish(Enum<?> resampleFilter, int regionWidth, int regionHeight, int outWidth, int outHeight) {
+		end();
+		if (shouldCommit()) {
+			path = ImageContext.describe(null);
+			pipeline = PipelineMetrics.current().getRun();
+			filter = resampleFilter.name();
+
+			sourceWidth = regionWidth;
+			sourceHeight = regionHeight;
+			targetWidth = outWidth;
+			targetHeight = outHeight;
+			commit();
+		}
+	}
+}
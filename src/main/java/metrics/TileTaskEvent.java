@@ -0,0 +1,63 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.nio.file.Path;
+
+
+/**
+ * One leaf tile of a TileProcessingTask, run on a pool worker
+ */
+@Name("imageprocessor.TileTask")
+@Label("Tile Task")
+@Category({"Image Processor", "Filters"})
+@Description("A leaf tile processed by a fork/join tile task")
+public final class TileTaskEvent extends jdk.jfr.Event {
+
+	@Label("Image")
+	String path;
+
+	@Label("Pipeline")
+	String pipeline;
+
+	@Label("X")
+	int x;
+
+	@Label("Y")
+	int y;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	/**
+	 * Create and begin the event; cheap when the event is disabled
+	 */
+	public static TileTaskEvent start() {
+		TileTaskEvent event = new TileTaskEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * End and commit the event if the recording wants it. The tile runs on a worker thread,
+	 * so the image is passed in from the task rather than read from the worker's context.
+	 */
+	public void finish(Path imagePath, int tileX, int tileY, int tileWidth, int tileHeight) {
+		end();
+		if (shouldCommit()) {
+			path = imagePath == null ? "" : imagePath.toString();
+			pipeline = PipelineMetrics.current().getRun();
+			x = tileX;
+			y = tileY;
+			width = tileWidth;
+			height = tileHeight;
+			commit();
+		}
+	}
+}
@@ -4,5 +4,12 @@ package model;
  * Image processing operations enum
  */
 public enum FilterType {
-	GRAYSCALE, BLUR, SHARPEN, BRIGHTNESS, CONTRAST
-}
\ No newline at end of file
+	GRAYSCALE, BLUR, SHARPEN, BRIGHTNESS, CONTRAST;
+
+	/**
+	 * Whether the filter computes each output pixel from the same input pixel only
+	 */
+	public boolean isPointFilter() {
+		return this == GRAYSCALE || this == BRIGHTNESS || this == CONTRAST;
+	}
+}
@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * How an image is mapped onto the target width and height
+ */
+public enum FitMode {
+	// Scale to fit inside the target box, keeping the aspect ratio; one side may come out smaller
+	FIT,
+	// Scale to cover the target box, keeping the aspect ratio, and center-crop the overflow
+	FILL,
+	// Stretch to exactly the target size
+	EXACT
+}
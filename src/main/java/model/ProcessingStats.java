@@ -7,11 +7,14 @@ public class ProcessingStats {
 	public long totalTime;
 	public int imagesProcessed;
 	public int failedImages;
+	// Part of imagesProcessed that was restored from the result cache
+	public int cachedImages;
 
 	@Override
 	public String toString() {
-		return String.format("Processed: %d images, Failed: %d, Time: %.2fs, Avg: %.2fs/image",
+		String summary = String.format("Processed: %d images, Failed: %d, Time: %.2fs, Avg: %.2fs/image",
 				imagesProcessed, failedImages, totalTime / 1000.0,
 				imagesProcessed > 0 ? (totalTime / 1000.0) / imagesProcessed : 0);
+		return cachedImages > 0 ? summary + ", From cache: " + cachedImages : summary;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+package model;
+
+/**
+ * Reconstruction kernels available for resizing
+ */
+public enum ResampleFilter {
+	BILINEAR(1), BICUBIC(2), LANCZOS3(3);
+
+	private final int radius;
+
+	ResampleFilter(int radius) {
+		this.radius = radius;
+	}
+
+	/**
+	 * Kernel support on each side, in source pixels at 1:1 scale
+	 */
+	public int getRadius() {
+		return radius;
+	}
+}
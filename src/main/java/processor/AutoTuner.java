@@ -0,0 +1,365 @@
+package processor;
+
+import config.ProcessingConfig;
+import model.FilterType;
+import util.BufferPool;
+import util.VectorUtils;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+
+/**
+ * Picks the processing strategy for each image from a measured cost model. A short calibration
+ * times every strategy on synthetic frames for each filter and size class. An image's filter time
+ * is then predicted per fused FilterPlan stage, at source size before the resize and at target
+ * size after it, as ResizePlan splits them, and the cheapest strategy wins. Filters are timed one
+ * at a time, so each measurement includes a full pass; a stage costs one pass plus what each of
+ * its filters adds beyond a pass, which leaves point filters folded into a lookup table nearly
+ * free, as they are when fused. Strategies that split an image across the pool only compete
+ * while workers are idle; once every worker has an image of its own, splitting just takes
+ * workers from the others.
+ *
+ * The calibration is saved to imageprocessor.autotune.file (default autotune.properties) and
+ * reused by later runs on the same core count, vector shape and Java version.
+ */
+public final class AutoTuner {
+
+	private static final Logger LOGGER = Logger.getLogger(AutoTuner.class.getName());
+
+	/**
+	 * Per-image strategies, named after the menu modes whose filter path each one runs
+	 */
+	public enum Strategy {
+		SEQUENTIAL(FilterPlan.Mode.SCALAR, false),
+		PARALLEL(FilterPlan.Mode.SCALAR, true),
+		VECTOR(FilterPlan.Mode.VECTOR, false),
+		HYBRID(FilterPlan.Mode.VECTOR, true);
+
+		private final FilterPlan.Mode mode;
+		private final boolean split;
+
+		Strategy(FilterPlan.Mode mode, boolean split) {
+			this.mode = mode;
+			this.split = split;
+		}
+
+		public FilterPlan.Mode getMode() {
+			return mode;
+		}
+
+		/**
+		 * Whether one image is split into tiles or bands across the shared pool
+		 */
+		public boolean isSplit() {
+			return split;
+		}
+	}
+
+	private static final int FORMAT_VERSION = 1;
+	// Size classes by pixel count, each calibrated on a frame inside it
+	private static final long[] CLASS_LIMITS = {750_000, 3_000_000, Long.MAX_VALUE};
+	private static final int[][] CLASS_FRAMES = {{640, 480}, {1280, 960}, {2048, 1536}};
+	// Timed runs per measurement after one warm-up; the fastest counts
+	private static final int REPEATS = 2;
+
+	private static volatile AutoTuner instance;
+
+	// Nanoseconds per pixel, indexed [strategy][filter][size class]; infinite when unsupported
+	private final double[][][] costs;
+
+	private AutoTuner(double[][][] costs) {
+		this.costs = costs;
+	}
+
+	/**
+	 * Tuner for this machine: the saved calibration when it matches, otherwise a fresh one,
+	 * which is saved for later runs
+	 */
+	public static AutoTuner get() {
+		AutoTuner tuner = instance;
+		if (tuner == null) {
+			synchronized (AutoTuner.class) {
+				tuner = instance;
+				if (tuner == null) {
+					tuner = loadOrCalibrate(Paths.get(System.getProperty("imageprocessor.autotune.file", "autotune.properties")));
+					instance = tuner;
+				}
+			}
+		}
+		return tuner;
+	}
+
+	/**
+	 * Fastest strategy for an image of the given decoded size; imagesInFlight is how many
+	 * images the run currently has admitted, this one included
+	 */
+	public Strategy choose(int width, int height, ProcessingConfig config, long imagesInFlight) {
+		boolean poolBusy = imagesInFlight >= ProcessingRuntime.get().getParallelism();
+		Workload workload = new Workload(width, height, config);
+		Strategy best = Strategy.SEQUENTIAL;
+		double bestCost = Double.POSITIVE_INFINITY;
+		for (Strategy strategy : Strategy.values()) {
+			if (strategy.isSplit() && poolBusy) {
+				continue;
+			}
+			double cost = estimateNanos(strategy, workload);
+			if (cost < bestCost) {
+				bestCost = cost;
+				best = strategy;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Predicted filter time of one image under a strategy, in nanoseconds
+	 */
+	public double estimateNanos(Strategy strategy, int width, int height, ProcessingConfig config) {
+		return estimateNanos(strategy, new Workload(width, height, config));
+	}
+
+	/**
+	 * Fused filter stages of one image on each side of the resize, compiled once and priced
+	 * for every strategy
+	 */
+	private static final class Workload {
+		private final List<FilterPlan.Stage> beforeResize;
+		private final long sourcePixels;
+		private final List<FilterPlan.Stage> afterResize;
+		private final long targetPixels;
+
+		private Workload(int width, int height, ProcessingConfig config) {
+			this.sourcePixels = (long) width * height;
+			if (config.getTargetWidth() <= 0 || config.getTargetHeight() <= 0) {
+				this.beforeResize = FilterPlan.compile(config.getFilters()).getStages();
+				this.afterResize = Collections.emptyList();
+				this.targetPixels = 0;
+				return;
+			}
+			ResizePlan plan = ResizePlan.compile(config.getFilters(), width, height, config);
+			int[] outSize = Resampler.getOutputSize(width, height,
+					config.getTargetWidth(), config.getTargetHeight(), config.getFitMode());
+			this.beforeResize = FilterPlan.compile(plan.getBeforeResize()).getStages();
+			this.afterResize = FilterPlan.compile(plan.getAfterResize()).getStages();
+			this.targetPixels = (long) outSize[0] * outSize[1];
+		}
+	}
+
+	private double estimateNanos(Strategy strategy, Workload workload) {
+		return cost(strategy, workload.beforeResize, workload.sourcePixels)
+				+ cost(strategy, workload.afterResize, workload.targetPixels);
+	}
+
+	private double cost(Strategy strategy, List<FilterPlan.Stage> stages, long pixels) {
+		if (stages.isEmpty()) {
+			return 0;
+		}
+		int sizeClass = classOf(pixels);
+		double[][] filterCosts = costs[strategy.ordinal()];
+		double pass = passCost(filterCosts, sizeClass);
+		double nanosPerPixel = 0;
+		for (FilterPlan.Stage stage : stages) {
+			// One pass per stage, plus whatever each fused filter costs beyond a pass of its own
+			nanosPerPixel += pass;
+			for (FilterType filter : stage.getPre()) {
+				nanosPerPixel += filterCosts[filter.ordinal()][sizeClass] - pass;
+			}
+			if (stage.getStencil() != null) {
+				nanosPerPixel += filterCosts[stage.getStencil().ordinal()][sizeClass] - pass;
+			}
+			for (FilterType filter : stage.getPost()) {
+				nanosPerPixel += filterCosts[filter.ordinal()][sizeClass] - pass;
+			}
+		}
+		return nanosPerPixel * pixels;
+	}
+
+	/**
+	 * Per-pixel cost of one pass with no real work in it: the cheapest point filter, whose
+	 * single table lookup is as close to a bare pass as the calibration measures
+	 */
+	private static double passCost(double[][] filterCosts, int sizeClass) {
+		double pass = Double.POSITIVE_INFINITY;
+		for (FilterType filter : FilterType.values()) {
+			if (filter.isPointFilter()) {
+				pass = Math.min(pass, filterCosts[filter.ordinal()][sizeClass]);
+			}
+		}
+		return Double.isInfinite(pass) ? 0 : pass;
+	}
+
+	private static int classOf(long pixels) {
+		int sizeClass = 0;
+		while (pixels >= CLASS_LIMITS[sizeClass]) {
+			sizeClass++;
+		}
+		return sizeClass;
+	}
+
+	private static AutoTuner loadOrCalibrate(Path file) {
+		String fingerprint = fingerprint();
+		if (Files.isRegularFile(file)) {
+			try {
+				AutoTuner loaded = load(file, fingerprint);
+				if (loaded != null) {
+					LOGGER.fine("Using auto-tuner calibration from " + file);
+					return loaded;
+				}
+				LOGGER.info("Auto-tuner calibration in " + file + " is for another machine; recalibrating");
+			} catch (IOException | IllegalArgumentException e) {
+				LOGGER.warning("Could not read auto-tuner calibration " + file + ": " + e.getMessage());
+			}
+		}
+
+		AutoTuner tuner = calibrate();
+		try {
+			tuner.save(file, fingerprint);
+			System.out.println("Auto-tuner calibration saved to " + file.toAbsolutePath());
+		} catch (IOException e) {
+			LOGGER.warning("Could not save auto-tuner calibration: " + e.getMessage());
+		}
+		return tuner;
+	}
+
+	/**
+	 * Time every strategy on synthetic frames through the same filter functions the runs use
+	 */
+	static AutoTuner calibrate() {
+		System.out.println("Calibrating auto-tuner...");
+		long start = System.nanoTime();
+		Strategy[] strategies = Strategy.values();
+		FilterType[] filters = FilterType.values();
+		double[][][] costs = new double[strategies.length][filters.length][CLASS_LIMITS.length];
+
+		for (int sizeClass = 0; sizeClass < CLASS_LIMITS.length; sizeClass++) {
+			BufferedImage frame = syntheticFrame(CLASS_FRAMES[sizeClass][0], CLASS_FRAMES[sizeClass][1]);
+			long pixels = (long) frame.getWidth() * frame.getHeight();
+			for (Strategy strategy : strategies) {
+				boolean supported = strategy.getMode() == FilterPlan.Mode.SCALAR || VectorUtils.isVectorAPISupported();
+				BiFunction<BufferedImage, List<FilterType>, BufferedImage> step =
+						ImageProcessor.filterStep(strategy.getMode(), strategy.isSplit());
+				for (FilterType filter : filters) {
+					costs[strategy.ordinal()][filter.ordinal()][sizeClass] = supported
+							? (double) time(step, frame, filter) / pixels
+							: Double.POSITIVE_INFINITY;
+				}
+			}
+			BufferPool.get().recycle(frame);
+		}
+
+		System.out.printf("Auto-tuner calibrated in %.1fs%n", (System.nanoTime() - start) / 1e9);
+		return new AutoTuner(costs);
+	}
+
+	private static long time(BiFunction<BufferedImage, List<FilterType>, BufferedImage> step,
+	                         BufferedImage frame, FilterType filter) {
+		List<FilterType> filters = Collections.singletonList(filter);
+		BufferPool.get().recycle(step.apply(frame, filters));
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < REPEATS; i++) {
+			long start = System.nanoTime();
+			BufferedImage result = step.apply(frame, filters);
+			best = Math.min(best, System.nanoTime() - start);
+			BufferPool.get().recycle(result);
+		}
+		return best;
+	}
+
+	/**
+	 * Opaque frame with smooth gradients and fine detail, so no filter hits a trivial case
+	 */
+	private static BufferedImage syntheticFrame(int width, int height) {
+		BufferedImage frame = BufferPool.get().createImage(width, height, false);
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int red = x * 255 / width;
+				int green = y * 255 / height;
+				int blue = (x * 31 + y * 17) & 0xFF;
+				row[x] = (red << 16) | (green << 8) | blue;
+			}
+			frame.getRaster().setDataElements(0, y, width, 1, row);
+		}
+		return frame;
+	}
+
+	/**
+	 * What the costs depend on besides the code: cores, vector shape and JVM
+	 */
+	private static String fingerprint() {
+		String vector = VectorUtils.isVectorAPISupported() ? VectorUtils.getOptimalIntSpecies().toString() : "none";
+		return FORMAT_VERSION + "|" + Runtime.getRuntime().availableProcessors() + "|" + vector
+				+ "|" + System.getProperty("java.version");
+	}
+
+	private static AutoTuner load(Path file, String fingerprint) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(file)) {
+			properties.load(reader);
+		}
+		if (!fingerprint.equals(properties.getProperty("fingerprint"))) {
+			return null;
+		}
+
+		double[][][] costs = new double[Strategy.values().length][FilterType.values().length][CLASS_LIMITS.length];
+		for (Strategy strategy : Strategy.values()) {
+			for (FilterType filter : FilterType.values()) {
+				for (int sizeClass = 0; sizeClass < CLASS_LIMITS.length; sizeClass++) {
+					String value = properties.getProperty(key(strategy, filter, sizeClass));
+					if (value == null) {
+						return null;
+					}
+					costs[strategy.ordinal()][filter.ordinal()][sizeClass] = Double.parseDouble(value);
+				}
+			}
+		}
+		return new AutoTuner(costs);
+	}
+
+	private void save(Path file, String fingerprint) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("fingerprint", fingerprint);
+		for (Strategy strategy : Strategy.values()) {
+			for (FilterType filter : FilterType.values()) {
+				for (int sizeClass = 0; sizeClass < CLASS_LIMITS.length; sizeClass++) {
+					properties.setProperty(key(strategy, filter, sizeClass),
+							Double.toString(costs[strategy.ordinal()][filter.ordinal()][sizeClass]));
+				}
+			}
+		}
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(temp)) {
+			properties.store(writer, "Auto-tuner calibration, nanoseconds per pixel by strategy.filter.sizeClass");
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static String key(Strategy strategy, FilterType filter, int sizeClass) {
+		return strategy.name() + "." + filter.name() + "." + sizeClass;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("Auto-tuner cost model (ns/pixel, small/medium/large):");
+		for (Strategy strategy : Strategy.values()) {
+			for (FilterType filter : FilterType.values()) {
+				double[] perClass = costs[strategy.ordinal()][filter.ordinal()];
+				text.append(String.format("%n  %-10s %-10s %8.2f %8.2f %8.2f",
+						strategy, filter, perClass[0], perClass[1], perClass[2]));
+			}
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,213 @@
+package processor;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide limit on the number of images in flight, adjusted at run time from heap pressure.
+ * The limit starts at the core count, capped so every image has at least MIN_IMAGE_BYTES of the
+ * heap the JVM sized from the container's memory limit. After that it follows additive increase,
+ * multiplicative decrease: a collection that leaves the old generation above the high-water mark,
+ * or an old pool crossing its collection usage threshold, halves the limit; a collection that
+ * leaves it below the low-water mark raises the limit by one, up to the maximum.
+ *
+ * Settings come from system properties:
+ * imageprocessor.concurrency.adaptive (true/false, default true),
+ * imageprocessor.concurrency.max (default twice the core count).
+ */
+public final class ConcurrencyController {
+
+	private static final Logger LOGGER = Logger.getLogger(ConcurrencyController.class.getName());
+
+	private static final double HIGH_WATER = 0.75;
+	private static final double LOW_WATER = 0.45;
+	// Working set of a 12 MP image: its source, one filter intermediate and the output
+	private static final long MIN_IMAGE_BYTES = 64L * 1024 * 1024;
+	// One collection can raise several notifications; they count as a single shrink
+	private static final long SHRINK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+	// Young collections come in bursts; grow at most one step per interval, and not right after a shrink
+	private static final long GROW_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static final ConcurrencyController INSTANCE = new ConcurrencyController(
+			Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory(),
+			Integer.getInteger("imageprocessor.concurrency.max", Runtime.getRuntime().availableProcessors() * 2),
+			Boolean.parseBoolean(System.getProperty("imageprocessor.concurrency.adaptive", "true")));
+
+	/**
+	 * Fair semaphore whose permits can be withdrawn while they are held
+	 */
+	private static final class Slots extends Semaphore {
+		private static final long serialVersionUID = 1L;
+
+		private Slots(int permits) {
+			super(permits, true);
+		}
+
+		private void withdraw(int permits) {
+			reducePermits(permits);
+		}
+	}
+
+	private final int initialLimit;
+	private final int maxLimit;
+	private final boolean adaptive;
+	private final Slots slots;
+	private final List<String> oldPools = new ArrayList<>();
+	private final AtomicLong shrinks = new AtomicLong();
+	private final AtomicLong grows = new AtomicLong();
+
+	// Guarded by this
+	private int limit;
+	private long lastShrinkNanos;
+	private long lastChangeNanos;
+
+	private ConcurrencyController(int processors, long maxHeapBytes, int maxLimit, boolean adaptive) {
+		this.maxLimit = Math.max(1, maxLimit);
+		int heapSlots = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxHeapBytes / MIN_IMAGE_BYTES));
+		this.initialLimit = Math.max(1, Math.min(this.maxLimit, Math.min(processors, heapSlots)));
+		this.adaptive = adaptive;
+		this.limit = initialLimit;
+		this.lastShrinkNanos = System.nanoTime() - SHRINK_INTERVAL_NANOS;
+		this.lastChangeNanos = System.nanoTime();
+		this.slots = new Slots(initialLimit);
+		if (adaptive) {
+			listen();
+		}
+	}
+
+	public static ConcurrencyController get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Block until another image may start
+	 */
+	public void acquire() throws InterruptedException {
+		slots.acquire();
+	}
+
+	/**
+	 * An image admitted by acquire has finished
+	 */
+	public void release() {
+		slots.release();
+	}
+
+	public synchronized int getLimit() {
+		return limit;
+	}
+
+	public int getInitialLimit() {
+		return initialLimit;
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * Watch the old generation: a usage threshold on every heap pool that supports one (the
+	 * pools that survive young collections), plus the end of every collection
+	 */
+	private void listen() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			long max = pool.getUsage().getMax();
+			if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+				pool.setCollectionUsageThreshold((long) (max * HIGH_WATER));
+				oldPools.add(pool.getName());
+			}
+		}
+
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(
+				(notification, handback) -> shrink("old generation above its usage threshold"),
+				notification -> MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()),
+				null);
+
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (collector instanceof NotificationEmitter) {
+				((NotificationEmitter) collector).addNotificationListener(
+						(notification, handback) -> onCollection(notification), notification ->
+								GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()),
+						null);
+			}
+		}
+	}
+
+	private void onCollection(Notification notification) {
+		GarbageCollectionNotificationInfo info =
+				GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+		double occupancy = oldOccupancy(info.getGcInfo().getMemoryUsageAfterGc());
+		if (occupancy > HIGH_WATER) {
+			shrink(String.format("%s left the old generation %.0f%% full", info.getGcName(), occupancy * 100));
+		} else if (occupancy >= 0 && occupancy < LOW_WATER) {
+			grow();
+		}
+	}
+
+	/**
+	 * Highest used/max fraction of the old pools after a collection; -1 when none is reported
+	 */
+	private double oldOccupancy(Map<String, MemoryUsage> usageAfter) {
+		double occupancy = -1;
+		for (String pool : oldPools) {
+			MemoryUsage usage = usageAfter.get(pool);
+			if (usage != null && usage.getMax() > 0) {
+				occupancy = Math.max(occupancy, (double) usage.getUsed() / usage.getMax());
+			}
+		}
+		return occupancy;
+	}
+
+	private synchronized void shrink(String reason) {
+		long now = System.nanoTime();
+		int target = Math.max(1, limit / 2);
+		if (target == limit || now - lastShrinkNanos < SHRINK_INTERVAL_NANOS) {
+			return;
+		}
+		// Images already running finish; the withdrawn permits just are not handed out again
+		slots.withdraw(limit - target);
+		LOGGER.info(String.format("Concurrency limit %d -> %d: %s", limit, target, reason));
+		limit = target;
+		lastShrinkNanos = now;
+		lastChangeNanos = now;
+		shrinks.incrementAndGet();
+	}
+
+	private synchronized void grow() {
+		long now = System.nanoTime();
+		if (limit >= maxLimit || now - lastChangeNanos < GROW_INTERVAL_NANOS) {
+			return;
+		}
+		slots.release();
+		limit++;
+		lastChangeNanos = now;
+		grows.incrementAndGet();
+		LOGGER.fine("Concurrency limit raised to " + limit);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Concurrency: limit %d of max %d (started at %d, %s), %d shrinks, %d grows",
+				getLimit(), maxLimit, initialLimit, adaptive ? "adaptive" : "fixed", shrinks.get(), grows.get());
+	}
+}
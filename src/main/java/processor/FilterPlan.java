@@ -0,0 +1,368 @@
+package processor;
+
+import metrics.FilterStageEvent;
+import metrics.PipelineMetrics;
+import model.FilterType;
+import task.RowBandTask;
+import util.BufferPool;
+import util.ImageUtils;
+import util.OffHeapImage;
+import util.PixelAccess;
+import util.PixelRows;
+import util.PointLut;
+import util.VectorUtils;
+
+import java.awt.image.BufferedImage;
+import java.lang.foreign.Arena;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiled filter chain that fuses point filters with their neighbouring stencil
+ * so each stage loads and stores every pixel exactly once
+ */
+public class FilterPlan {
+
+	/**
+	 * Pixel arithmetic used for the point filters of a plan
+	 */
+	public enum Mode {
+		SCALAR, VECTOR
+	}
+
+	/**
+	 * One fused pass: leading point filters, an optional stencil and trailing point filters.
+	 * Each run of point filters is compiled into a single lookup table.
+	 */
+	public static final class Stage {
+		private final List<FilterType> pre;
+		private final FilterType stencil;
+		private final List<FilterType> post;
+		private final PointLut preLut;
+		private final PointLut postLut;
+		private final String metricName;
+
+		Stage(List<FilterType> pre, FilterType stencil, List<FilterType> post) {
+			this.pre = Collections.unmodifiableList(new ArrayList<>(pre));
+			this.stencil = stencil;
+			this.post = Collections.unmodifiableList(new ArrayList<>(post));
+			this.preLut = pre.isEmpty() ? null : PointLut.compile(pre);
+			this.postLut = post.isEmpty() ? null : PointLut.compile(post);
+			this.metricName = PipelineMetrics.FILTER_PREFIX + this;
+		}
+
+		public List<FilterType> getPre() {
+			return pre;
+		}
+
+		public FilterType getStencil() {
+			return stencil;
+		}
+
+		public List<FilterType> getPost() {
+			return post;
+		}
+
+		/**
+		 * Number of neighbouring pixels the stage reads on each side
+		 */
+		public int getRadius() {
+			return stencil == null ? 0 : ImageUtils.getKernelSize(stencil) / 2;
+		}
+
+		/**
+		 * Record one whole-image execution that began at start (System.nanoTime) in the run metrics
+		 */
+		public void record(long start, int width, int height) {
+			PipelineMetrics.stageOf(metricName).record(System.nanoTime() - start, 0, 0, (long) width * height);
+		}
+
+		@Override
+		public String toString() {
+			List<String> parts = new ArrayList<>();
+			pre.forEach(f -> parts.add(f.name()));
+			if (stencil != null) {
+				parts.add("[" + stencil.name() + "]");
+			}
+			post.forEach(f -> parts.add(f.name()));
+			return String.join("+", parts);
+		}
+	}
+
+	private final List<Stage> stages;
+
+	private FilterPlan(List<Stage> stages) {
+		this.stages = Collections.unmodifiableList(stages);
+	}
+
+	/**
+	 * Compile a filter chain, merging runs of point filters into the adjacent stencil pass
+	 */
+	public static FilterPlan compile(List<FilterType> filters) {
+		List<Stage> stages = new ArrayList<>();
+		List<FilterType> pre = new ArrayList<>();
+		List<FilterType> pending = new ArrayList<>();
+		FilterType stencil = null;
+
+		for (FilterType filter : filters) {
+			if (filter.isPointFilter()) {
+				pending.add(filter);
+			} else if (stencil == null) {
+				pre = pending;
+				pending = new ArrayList<>();
+				stencil = filter;
+			} else {
+				// Two stencils cannot share a pass; points in between run on the way out
+				stages.add(new Stage(pre, stencil, pending));
+				pre = new ArrayList<>();
+				pending = new ArrayList<>();
+				stencil = filter;
+			}
+		}
+
+		if (stencil != null) {
+			stages.add(new Stage(pre, stencil, pending));
+		} else if (!pending.isEmpty()) {
+			stages.add(new Stage(pending, null, Collections.emptyList()));
+		}
+
+		return new FilterPlan(stages);
+	}
+
+	public List<Stage> getStages() {
+		return stages;
+	}
+
+	/**
+	 * Run every stage over the whole image on the calling thread; the source image is left untouched
+	 */
+	public BufferedImage execute(BufferedImage image, Mode mode) {
+		return execute(image, mode, false);
+	}
+
+	/**
+	 * Run every stage over the whole image, optionally splitting each stage into row bands
+	 * that run concurrently on the shared processing pool. Stage outputs come from the buffer
+	 * pool and each intermediate goes back once the next stage has read it.
+	 */
+	public BufferedImage execute(BufferedImage image, Mode mode, boolean parallel) {
+		if (stages.isEmpty()) {
+			return ImageUtils.deepCopy(image);
+		}
+
+		int width = image.getWidth();
+		BufferedImage current = image;
+		for (Stage stage : stages) {
+			FilterStageEvent event = FilterStageEvent.start();
+			long start = System.nanoTime();
+			BufferedImage source = current;
+			BufferedImage target = createTarget(image, mode);
+			if (parallel) {
+				// Bands only share the read-only source, so no locking is needed
+				RowBandTask.run(ProcessingRuntime.get().getPool(), image.getHeight(), (rowStart, rowEnd) ->
+						executeStage(stage, source, target, 0, rowStart, width, rowEnd - rowStart, mode));
+			} else {
+				executeStage(stage, source, target, 0, 0, width, image.getHeight(), mode);
+			}
+			if (source != image) {
+				BufferPool.get().recycle(source);
+			}
+			stage.record(start, width, image.getHeight());
+			event.finish(stage, mode, parallel ? "bands" : "none", width, image.getHeight());
+			current = target;
+		}
+		return current;
+	}
+
+	/**
+	 * Run every stage over an off-heap frame. Intermediates come from the arena and alternate
+	 * between two frames, so a long chain needs no more memory than two stages; the source frame
+	 * is left untouched. Alpha is kept in VECTOR mode only, as with the heap targets.
+	 */
+	public OffHeapImage execute(OffHeapImage image, Mode mode, boolean parallel, Arena arena) {
+		if (stages.isEmpty()) {
+			return image.copy(arena);
+		}
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		boolean alpha = mode == Mode.VECTOR && image.hasAlpha();
+		OffHeapImage[] targets = new OffHeapImage[2];
+		OffHeapImage current = image;
+		for (int i = 0; i < stages.size(); i++) {
+			Stage stage = stages.get(i);
+			if (targets[i % 2] == null) {
+				targets[i % 2] = OffHeapImage.allocate(arena, width, height, alpha);
+			}
+			FilterStageEvent event = FilterStageEvent.start();
+			long start = System.nanoTime();
+			OffHeapImage source = current;
+			OffHeapImage target = targets[i % 2];
+			if (parallel) {
+				RowBandTask.run(ProcessingRuntime.get().getPool(), height, (rowStart, rowEnd) ->
+						executeStage(stage, source, target, 0, rowStart, width, rowEnd - rowStart, mode));
+			} else {
+				executeStage(stage, source, target, 0, 0, width, height, mode);
+			}
+			stage.record(start, width, height);
+			event.finish(stage, mode, parallel ? "bands" : "none", width, height);
+			current = target;
+		}
+		return current;
+	}
+
+	/**
+	 * Create the destination image type each mode has always produced, over a pooled buffer:
+	 * TYPE_INT_ARGB for ARGB sources in VECTOR mode, TYPE_INT_RGB otherwise
+	 */
+	static BufferedImage createTarget(BufferedImage image, Mode mode) {
+		boolean alpha = mode == Mode.VECTOR && image.getType() == BufferedImage.TYPE_INT_ARGB;
+		return BufferPool.get().createImage(image.getWidth(), image.getHeight(), alpha);
+	}
+
+	/**
+	 * Execute one stage over a rectangular region, reading the stencil halo from the source
+	 */
+	public static void executeStage(Stage stage, BufferedImage src, BufferedImage dst,
+	                                int x0, int y0, int width, int height, Mode mode) {
+		executeStage(stage, PixelAccess.of(src), PixelAccess.of(dst), x0, y0, width, height, mode);
+	}
+
+	/**
+	 * Same as above for any pixel storage. Off-heap frames in VECTOR mode run directly on their
+	 * segments when the stage allows it; everything else streams rows through heap scratch.
+	 */
+	public static void executeStage(Stage stage, PixelRows in, PixelRows out,
+	                                int x0, int y0, int width, int height, Mode mode) {
+		if (mode == Mode.VECTOR && in instanceof OffHeapImage && out instanceof OffHeapImage
+				&& executeInSegments(stage, (OffHeapImage) in, (OffHeapImage) out, x0, y0, width, height)) {
+			return;
+		}
+
+		int radius = stage.getRadius();
+		int paddedWidth = width + 2 * radius;
+		BufferPool pool = BufferPool.get();
+
+		if (stage.stencil == null) {
+			try (BufferPool.Lease<int[]> rowLease = pool.leaseInts(width)) {
+				int[] row = rowLease.get();
+				for (int y = y0; y < y0 + height; y++) {
+					in.readRow(x0, y, width, row, 0);
+					applyPoints(stage.preLut, row, width, mode);
+					out.writeRow(x0, y, width, row, 0);
+				}
+			}
+			return;
+		}
+
+		int kernelSize = 2 * radius + 1;
+		float[] kernel = ImageUtils.getKernel(stage.stencil);
+		int imageHeight = in.getHeight();
+
+		// Ring of pre-filtered source rows, tagged with the row index they hold
+		try (BufferPool.Lease<int[]> rowLease = pool.leaseInts(width);
+		     BufferPool.Lease<int[][]> ringLease = pool.leaseIntRows(kernelSize, paddedWidth)) {
+			int[] row = rowLease.get();
+			int[][] ring = ringLease.get();
+			int[] ringRow = new int[kernelSize];
+			Arrays.fill(ringRow, -1);
+			int[][] window = new int[kernelSize][];
+
+			for (int y = y0; y < y0 + height; y++) {
+				for (int ky = 0; ky < kernelSize; ky++) {
+					int sy = Math.min(Math.max(y + ky - radius, 0), imageHeight - 1);
+					int slot = Math.floorMod(sy, kernelSize);
+					if (ringRow[slot] != sy) {
+						loadPaddedRow(in, sy, x0, width, radius, ring[slot]);
+						applyPoints(stage.preLut, ring[slot], paddedWidth, mode);
+						ringRow[slot] = sy;
+					}
+					window[ky] = ring[slot];
+				}
+
+				if (mode == Mode.VECTOR) {
+					VectorUtils.convolveRow(window, kernel, kernelSize, width, row);
+				} else {
+					VectorUtils.convolveRowScalar(window, kernel, kernelSize, 0, width, row);
+				}
+				applyPoints(stage.postLut, row, width, mode);
+				out.writeRow(x0, y, width, row, 0);
+			}
+		}
+	}
+
+	/**
+	 * Segment-to-segment stage for point-only stages and for stencils without leading point
+	 * filters over full rows; returns false when the stage needs the row path. Alpha is copied
+	 * from the source, so an opaque target only takes opaque sources here.
+	 */
+	private static boolean executeInSegments(Stage stage, OffHeapImage in, OffHeapImage out,
+	                                         int x0, int y0, int width, int height) {
+		if (in.hasAlpha() && !out.hasAlpha()) {
+			return false;
+		}
+
+		if (stage.stencil == null) {
+			for (int y = y0; y < y0 + height; y++) {
+				stage.preLut.applyVector(in.getSegment(), in.offsetOf(x0, y), out.getSegment(), out.offsetOf(x0, y), width);
+			}
+			return true;
+		}
+
+		if (stage.preLut != null || x0 != 0 || width != in.getWidth()) {
+			return false;
+		}
+		VectorUtils.convolveVector(in.getSegment(), out.getSegment(), in.getWidth(), in.getHeight(),
+				ImageUtils.getKernel(stage.stencil), ImageUtils.getKernelSize(stage.stencil), y0, y0 + height);
+		if (stage.postLut != null) {
+			for (int y = y0; y < y0 + height; y++) {
+				long offset = out.offsetOf(0, y);
+				stage.postLut.applyVector(out.getSegment(), offset, out.getSegment(), offset, width);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Load a source row segment with edge-clamped padding on both sides into row[0..width + 2 * radius)
+	 */
+	private static void loadPaddedRow(PixelRows src, int y, int x0, int width, int radius, int[] row) {
+		int imageWidth = src.getWidth();
+		int start = Math.max(x0 - radius, 0);
+		int end = Math.min(x0 + width + radius, imageWidth);
+		int offset = start - (x0 - radius);
+
+		src.readRow(start, y, end - start, row, offset);
+
+		for (int i = 0; i < offset; i++) {
+			row[i] = row[offset];
+		}
+		int last = offset + (end - start) - 1;
+		for (int i = last + 1; i < width + 2 * radius; i++) {
+			row[i] = row[last];
+		}
+	}
+
+	/**
+	 * Apply a compiled run of point filters to row[0..length) in place; null means no point filters
+	 */
+	private static void applyPoints(PointLut lut, int[] row, int length, Mode mode) {
+		if (lut == null) {
+			return;
+		}
+		if (mode == Mode.VECTOR) {
+			lut.applyVector(row, row, length);
+		} else {
+			lut.apply(row, row, length);
+		}
+	}
+
+	@Override
+	public String toString() {
+		List<String> parts = new ArrayList<>();
+		stages.forEach(s -> parts.add(s.toString()));
+		return parts.isEmpty() ? "(identity)" : String.join(" | ", parts);
+	}
+}
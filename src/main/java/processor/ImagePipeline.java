@@ -0,0 +1,394 @@
+package processor;
+
+import metrics.ImageContext;
+import util.ImageSource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Staged decode -> compute -> encode pipeline linked by bounded queues.
+ * Decode and encode run on their own I/O threads (platform or virtual); compute workers
+ * run on the shared processing pool. Full queues block the stage upstream, and each image
+ * holds a memory budget permit from before it is read until it is written, so memory stays
+ * bounded without batch barriers.
+ */
+public class ImagePipeline {
+
+	/**
+	 * Load one input (decoded image or raw bytes); may return null when the file cannot be read
+	 */
+	@FunctionalInterface
+	public interface Decoder<T> {
+		T decode(Path path) throws Exception;
+	}
+
+	/**
+	 * CPU-bound work between decode and encode
+	 */
+	@FunctionalInterface
+	public interface Compute<I, O> {
+		O apply(Path path, I input) throws Exception;
+	}
+
+	/**
+	 * Write one processed result
+	 */
+	@FunctionalInterface
+	public interface Encoder<T> {
+		void encode(Path path, T output) throws Exception;
+	}
+
+	/**
+	 * Reserve memory for one input before it is read; the permit is closed once the image is
+	 * written or dropped
+	 */
+	@FunctionalInterface
+	public interface Admission {
+		MemoryBudget.Permit admit(Path path) throws InterruptedException;
+	}
+
+	/**
+	 * Payload travelling between stages with the permit for its memory; the poison job tells a worker to stop
+	 */
+	private static final class Job {
+		private static final Job POISON = new Job(null, null, null);
+
+		private final Path path;
+		private final Object payload;
+		private final MemoryBudget.Permit permit;
+
+		private Job(Path path, Object payload, MemoryBudget.Permit permit) {
+			this.path = path;
+			this.payload = payload;
+			this.permit = permit;
+		}
+	}
+
+	// Virtual I/O threads only park while reading or writing, so many can be in flight
+	private static final int VIRTUAL_IO_THREADS = 64;
+
+	private final String name;
+	private final int decodeThreads;
+	private final int computeWorkers;
+	private final int encodeThreads;
+	private final int queueCapacity;
+	private final boolean virtualIo;
+
+	public ImagePipeline(String name, int decodeThreads, int computeWorkers, int encodeThreads,
+	                     int queueCapacity, boolean virtualIo) {
+		this.name = name;
+		this.decodeThreads = Math.max(1, decodeThreads);
+		this.computeWorkers = Math.max(1, computeWorkers);
+		this.encodeThreads = Math.max(1, encodeThreads);
+		this.queueCapacity = Math.max(1, queueCapacity);
+		this.virtualIo = virtualIo;
+	}
+
+	/**
+	 * Pipeline with stage sizes derived from the shared pool
+	 */
+	public static ImagePipeline withDefaults(String name) {
+		int parallelism = ProcessingRuntime.get().getParallelism();
+		int ioThreads = Math.max(2, parallelism / 2);
+		return new ImagePipeline(name, ioThreads, parallelism, ioThreads, parallelism * 2, false);
+	}
+
+	/**
+	 * Pipeline whose read and write stages run on virtual threads; only compute occupies
+	 * the core-sized pool
+	 */
+	public static ImagePipeline withVirtualIo(String name) {
+		int parallelism = ProcessingRuntime.get().getParallelism();
+		return new ImagePipeline(name, VIRTUAL_IO_THREADS, parallelism, VIRTUAL_IO_THREADS, parallelism * 2, true);
+	}
+
+	/**
+	 * Push every input through the three stages and wait for the last image to be written.
+	 * Returns {processed, failed}.
+	 */
+	public <I, O> int[] run(List<Path> inputs, Admission admission,
+	                        Decoder<I> decoder, Compute<I, O> compute, Encoder<O> encoder) {
+		return run(ImageSource.of(inputs), admission, decoder, compute, encoder);
+	}
+
+	/**
+	 * Same as above, but decoders pull paths from a source that may still be producing them,
+	 * so the first images are processed while discovery is under way
+	 */
+	public <I, O> int[] run(ImageSource inputs, Admission admission,
+	                        Decoder<I> decoder, Compute<I, O> compute, Encoder<O> encoder) {
+		return run(inputs, admission, decoder, compute, encoder, ProgressReporter.untracked());
+	}
+
+	/**
+	 * Same as above, counting every image into progress as it is admitted, written or dropped,
+	 * and reporting the images waiting in the stage queues
+	 */
+	@SuppressWarnings({"unchecked", "try"}) // ImageContext scopes are entered for their side effect only
+	public <I, O> int[] run(ImageSource inputs, Admission admission,
+	                        Decoder<I> decoder, Compute<I, O> compute, Encoder<O> encoder,
+	                        ProgressReporter progress) {
+		BlockingQueue<Job> decoded = new ArrayBlockingQueue<>(queueCapacity);
+		BlockingQueue<Job> computed = new ArrayBlockingQueue<>(queueCapacity);
+		long processedBefore = progress.getCompleted();
+		long failedBefore = progress.getFailed();
+		progress.setQueueDepth(() -> decoded.size() + computed.size());
+
+		ExecutorService decodePool = newIoExecutor(name + "-decode", decodeThreads);
+		ExecutorService encodePool = newIoExecutor(name + "-encode", encodeThreads);
+
+		try {
+			List<Future<?>> decoders = new ArrayList<>();
+			for (int i = 0; i < decodeThreads; i++) {
+				decoders.add(decodePool.submit(() -> {
+					Path path;
+					while ((path = nextInput(inputs)) != null) {
+						MemoryBudget.Permit permit = null;
+						try {
+							permit = admission.admit(path);
+							progress.imageStarted();
+							I input;
+							try (ImageContext context = ImageContext.enter(path)) {
+								input = decoder.decode(path);
+							}
+							if (input == null) {
+								System.err.println("Failed to load: " + path);
+								progress.imageFailed();
+								permit.close();
+								continue;
+							}
+							decoded.put(new Job(path, input, permit));
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							release(permit);
+							return;
+						} catch (Exception | OutOfMemoryError e) {
+							System.err.println("Error decoding " + path + ": " + e.getMessage());
+							if (permit != null) {
+								progress.imageFailed();
+							}
+							release(permit);
+						} catch (Error e) {
+							// This decoder is lost; the others keep reading, but its image must not hold memory
+							if (permit != null) {
+								progress.imageFailed();
+							}
+							release(permit);
+							throw e;
+						}
+					}
+				}));
+			}
+
+			List<ForkJoinTask<?>> computers = new ArrayList<>();
+			for (int i = 0; i < computeWorkers; i++) {
+				computers.add(ProcessingRuntime.get().submit(() -> {
+					Job job;
+					while ((job = take(decoded)) != Job.POISON) {
+						try {
+							O output;
+							try (ImageContext context = ImageContext.enter(job.path)) {
+								output = compute.apply(job.path, (I) job.payload);
+							}
+							put(computed, new Job(job.path, output, job.permit));
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							job.permit.close();
+							return null;
+						} catch (Exception | OutOfMemoryError e) {
+							System.err.println("Error processing " + job.path + ": " + e.getMessage());
+							progress.imageFailed();
+							job.permit.close();
+						} catch (Error e) {
+							// This worker is lost: keep the queue moving so decoders never block on it
+							System.err.println("Compute worker failed on " + job.path + ": " + e);
+							progress.imageFailed();
+							job.permit.close();
+							drainFailed(decoded, progress);
+							throw e;
+						}
+					}
+					return null;
+				}));
+			}
+
+			List<Future<?>> encoders = new ArrayList<>();
+			for (int i = 0; i < encodeThreads; i++) {
+				encoders.add(encodePool.submit(() -> {
+					Job job = null;
+					try {
+						while ((job = computed.take()) != Job.POISON) {
+							try (ImageContext context = ImageContext.enter(job.path)) {
+								encoder.encode(job.path, (O) job.payload);
+								progress.imageCompleted();
+							} catch (Exception | OutOfMemoryError e) {
+								System.err.println("Error saving " + job.path + ": " + e.getMessage());
+								progress.imageFailed();
+							} finally {
+								job.permit.close();
+							}
+						}
+					} catch (Error e) {
+						// This encoder is lost: keep the queue moving so compute workers never block on it
+						System.err.println("Encoder failed on " + (job != null ? job.path : "take") + ": " + e);
+						if (job != null) {
+							progress.imageFailed();
+						}
+						drainFailed(computed, progress);
+						throw e;
+					}
+					return null;
+				}));
+			}
+
+			// Drain stage by stage: once a stage's producers are done, stop its consumers
+			awaitAll(decoders);
+			for (int i = 0; i < computeWorkers; i++) {
+				decoded.put(Job.POISON);
+			}
+			awaitAll(computers);
+			for (int i = 0; i < encodeThreads; i++) {
+				computed.put(Job.POISON);
+			}
+			awaitAll(encoders);
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			decodePool.shutdownNow();
+			encodePool.shutdownNow();
+			progress.setQueueDepth(() -> 0);
+		}
+
+		return new int[]{(int) (progress.getCompleted() - processedBefore), (int) (progress.getFailed() - failedBefore)};
+	}
+
+	private static Path nextInput(ImageSource inputs) {
+		try {
+			return inputs.next();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	private static void release(MemoryBudget.Permit permit) {
+		if (permit != null) {
+			permit.close();
+		}
+	}
+
+	/**
+	 * Consume a queue whose worker failed until its poison pill, counting every job as failed
+	 * and releasing its permit
+	 */
+	private static void drainFailed(BlockingQueue<Job> queue, ProgressReporter progress) throws InterruptedException {
+		Job job;
+		while ((job = take(queue)) != Job.POISON) {
+			System.err.println("Dropped " + job.path + " after a pipeline worker failure");
+			progress.imageFailed();
+			job.permit.close();
+		}
+	}
+
+	private static void awaitAll(List<? extends Future<?>> futures) throws InterruptedException {
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				System.err.println("Pipeline worker failed: " + e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Blocking take that lets the ForkJoin pool compensate while a worker waits
+	 */
+	private static <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+		if (!(Thread.currentThread() instanceof ForkJoinWorkerThread)) {
+			return queue.take();
+		}
+
+		List<T> holder = new ArrayList<>(1);
+		ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+			@Override
+			public boolean block() throws InterruptedException {
+				if (holder.isEmpty()) {
+					holder.add(queue.take());
+				}
+				return true;
+			}
+
+			@Override
+			public boolean isReleasable() {
+				if (holder.isEmpty()) {
+					T item = queue.poll();
+					if (item != null) {
+						holder.add(item);
+					}
+				}
+				return !holder.isEmpty();
+			}
+		});
+		return holder.get(0);
+	}
+
+	/**
+	 * Blocking put that lets the ForkJoin pool compensate while a worker waits
+	 */
+	private static <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+		if (!(Thread.currentThread() instanceof ForkJoinWorkerThread)) {
+			queue.put(item);
+			return;
+		}
+
+		boolean[] done = new boolean[1];
+		ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+			@Override
+			public boolean block() throws InterruptedException {
+				if (!done[0]) {
+					queue.put(item);
+					done[0] = true;
+				}
+				return true;
+			}
+
+			@Override
+			public boolean isReleasable() {
+				if (!done[0]) {
+					done[0] = queue.offer(item);
+				}
+				return done[0];
+			}
+		});
+	}
+
+	private ExecutorService newIoExecutor(String prefix, int threads) {
+		if (virtualIo) {
+			return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix + "-", 1).factory());
+		}
+		return Executors.newFixedThreadPool(threads, namedThreads(prefix));
+	}
+
+	private static ThreadFactory namedThreads(String prefix) {
+		AtomicInteger index = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + "-" + index.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -1,200 +1,152 @@
 package processor;
 
 import config.ProcessingConfig;
+import metrics.FilterStageEvent;
+import metrics.ImageContext;
+import metrics.PipelineMetrics;
 import model.FilterType;
 import model.ProcessingStats;
 import task.TileProcessingTask;
+import util.BufferPool;
+import util.ImageSource;
 import util.ImageUtils;
+import util.OffHeapImage;
 import util.VectorUtils;
 import java.awt.image.BufferedImage;
+import java.lang.foreign.Arena;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.concurrent.*;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
 
 /**
- * Fixed image processing class with controlled thread pool size and proper resource management
+ * Image processing pipelines; all parallel work runs on the shared ProcessingRuntime pool
  */
 public class ImageProcessor {
 
-	// FIXED: Limited thread pool size to prevent memory exhaustion
-	private static final int MAX_THREAD_POOL_SIZE = 8;
 	private static final int TILE_SIZE = 256;
 
-	// Thread-local storage for Vector API operations
-	private static final ThreadLocal<int[]> THREAD_LOCAL_SRC_BUFFER = ThreadLocal.withInitial(() -> new int[1024 * 1024]);
-	private static final ThreadLocal<int[]> THREAD_LOCAL_DST_BUFFER = ThreadLocal.withInitial(() -> new int[1024 * 1024]);
-
-	// Synchronization for Vector API operations (if needed)
-	private static final ReentrantLock VECTOR_LOCK = new ReentrantLock();
+	// Keep filter and resize intermediates in off-heap arenas instead of heap images
+	private static final boolean OFF_HEAP = Boolean.getBoolean("imageprocessor.offheap");
 
 	/**
 	 * Sequential image processing baseline for comparison
 	 */
+	@SuppressWarnings("try") // ImageContext is entered for its side effect only
 	public static ProcessingStats processImagesSequential(List<Path> imagePaths,
 	                                                      Path outputDir,
 	                                                      ProcessingConfig config) {
 		System.out.println("=== SEQUENTIAL PROCESSING ===");
 		ProcessingStats stats = new ProcessingStats();
+		PipelineMetrics runMetrics = PipelineMetrics.start("sequential");
+		ProgressReporter progress = ProgressReporter.start("sequential", ImageSource.of(imagePaths));
 		long startTime = System.currentTimeMillis();
+		OutputPlan outputs = new OutputPlan(config, cacheKey(config, FilterPlan.Mode.SCALAR), outputDir, "seq_");
 
 		for (Path imagePath : imagePaths) {
-			try {
-				System.out.printf("Processing: %s%n", imagePath.getFileName());
+			try (ImageContext context = ImageContext.enter(imagePath)) {
+				if (outputs.restore(imagePath)) {
+					stats.imagesProcessed++;
+					stats.cachedImages++;
+					progress.imageCached();
+					continue;
+				}
+
+				progress.imageStarted();
+				if (ProgressReporter.isPerImageLogging()) {
+					System.out.printf("Processing: %s%n", imagePath.getFileName());
+				}
 
-				// Load image
-				BufferedImage image = ImageUtils.loadImage(imagePath);
+				// Load image, subsampled when the largest output is much smaller
+				BufferedImage image = outputs.load(imagePath);
 				if (image == null) {
 					System.err.println("Failed to load: " + imagePath);
 					stats.failedImages++;
+					progress.imageFailed();
 					continue;
 				}
 
-				// Apply filters sequentially
-				BufferedImage processed = applyFiltersSequential(image, config.getFilters());
+				// Apply filters sequentially, resizing at the point the plan picks
+				List<BufferedImage> processed = outputs.render(image, FilterPlan.Mode.SCALAR, false);
 
-				// Resize
-				if (config.getTargetWidth() > 0 && config.getTargetHeight() > 0) {
-					processed = ImageUtils.resizeImage(processed, config.getTargetWidth(), config.getTargetHeight());
-				}
-
-				// Save result
-				Path outputPath = outputDir.resolve("seq_" + imagePath.getFileName());
-				ImageUtils.saveImage(processed, outputPath, config.getCompressionQuality());
+				// Save results
+				outputs.save(imagePath, processed);
 
 				stats.imagesProcessed++;
+				progress.imageCompleted();
 
 			} catch (Exception e) {
 				System.err.println("Error processing " + imagePath + ": " + e.getMessage());
 				stats.failedImages++;
+				progress.imageFailed();
 			}
 		}
 
+		outputs.flush();
 		stats.totalTime = System.currentTimeMillis() - startTime;
+		progress.close();
 		System.out.println("Sequential: " + stats);
+		runMetrics.finish(stats);
 		return stats;
 	}
 
 	/**
-	 * FIXED: Parallel image processing with limited thread pool and proper task batching
+	 * Parallel image processing as a decode -> filter -> encode pipeline on the shared pool
 	 */
 	public static ProcessingStats processImagesParallel(List<Path> imagePaths,
 	                                                    Path outputDir,
 	                                                    ProcessingConfig config) {
-		System.out.println("=== PARALLEL PROCESSING (Fixed Thread Pool) ===");
-		System.out.printf("Using fixed thread pool size: %d threads%n", MAX_THREAD_POOL_SIZE);
+		return processImagesParallel(ImageSource.of(imagePaths), outputDir, config);
+	}
+
+	/**
+	 * Same as above, fed from a source that may still be discovering inputs
+	 */
+	public static ProcessingStats processImagesParallel(ImageSource imagePaths,
+	                                                     Path outputDir,
+	                                                     ProcessingConfig config) {
+		System.out.println("=== PARALLEL PROCESSING (Pipelined, Shared Pool) ===");
+		System.out.printf("Using shared pool: %d threads%n", ProcessingRuntime.get().getParallelism());
 
 		ProcessingStats stats = new ProcessingStats();
+		PipelineMetrics runMetrics = PipelineMetrics.start("parallel");
+		ProgressReporter progress = ProgressReporter.start("parallel", imagePaths);
 		long startTime = System.currentTimeMillis();
 
-		// FIXED: Use fixed thread pool instead of one thread per image
-		ExecutorService executor = Executors.newFixedThreadPool(MAX_THREAD_POOL_SIZE);
-
-		// Process images in batches to control memory usage
-		int batchSize = Math.max(1, MAX_THREAD_POOL_SIZE * 2); // Process in small batches
-		List<List<Path>> batches = createBatches(imagePaths, batchSize);
-
-		System.out.printf("Processing %d images in %d batches (batch size: %d)%n",
-				imagePaths.size(), batches.size(), batchSize);
+		OutputPlan outputs = new OutputPlan(config, cacheKey(config, FilterPlan.Mode.SCALAR), outputDir, "parallel_");
 
-		for (int batchIndex = 0; batchIndex < batches.size(); batchIndex++) {
-			List<Path> batch = batches.get(batchIndex);
-			System.out.printf("Processing batch %d/%d (%d images)%n",
-					batchIndex + 1, batches.size(), batch.size());
-
-			List<Future<Boolean>> futures = new ArrayList<>();
-
-			// Submit batch tasks
-			for (Path imagePath : batch) {
-				Future<Boolean> future = executor.submit(() -> {
-					try {
+		ImagePipeline pipeline = ImagePipeline.withDefaults("parallel");
+		int[] counts = pipeline.run(skipCached(imagePaths, outputs, progress),
+				imagePath -> MemoryBudget.get().admit(imagePath, config),
+				outputs::load,
+				(imagePath, image) -> {
+					if (ProgressReporter.isPerImageLogging()) {
 						System.out.printf("Processing: %s [Thread: %s]%n",
 								imagePath.getFileName(), Thread.currentThread().getName());
-
-						BufferedImage image = ImageUtils.loadImage(imagePath);
-						if (image == null) {
-							System.err.println("Failed to load: " + imagePath);
-							return false;
-						}
-
-						BufferedImage processed;
-						if (config.isUseTileParallelism()) {
-							processed = applyFiltersParallelTiles(image, config.getFilters());
-						} else {
-							processed = applyFiltersSequential(image, config.getFilters());
-						}
-
-						if (config.getTargetWidth() > 0 && config.getTargetHeight() > 0) {
-							processed = ImageUtils.resizeImage(processed, config.getTargetWidth(), config.getTargetHeight());
-						}
-
-						Path outputPath = outputDir.resolve("parallel_" + imagePath.getFileName());
-						ImageUtils.saveImage(processed, outputPath, config.getCompressionQuality());
-
-						return true;
-					} catch (OutOfMemoryError e) {
-						System.err.println("Out of memory processing " + imagePath + ": " + e.getMessage());
-						// Force garbage collection
-						System.gc();
-						return false;
-					} catch (Exception e) {
-						System.err.println("Error processing " + imagePath + ": " + e.getMessage());
-						return false;
 					}
-				});
-				futures.add(future);
-			}
 
-			// Wait for batch completion with timeout
-			for (Future<Boolean> future : futures) {
-				try {
-					Boolean result = future.get(60, TimeUnit.SECONDS);
-					if (result) {
-						stats.imagesProcessed++;
-					} else {
-						stats.failedImages++;
-					}
-				} catch (TimeoutException e) {
-					System.err.println("Task timed out - cancelling");
-					future.cancel(true);
-					stats.failedImages++;
-				} catch (Exception e) {
-					System.err.println("Task failed: " + e.getMessage());
-					stats.failedImages++;
-				}
-			}
-
-			// Clear futures list to help GC
-			futures.clear();
-
-			// Force garbage collection between batches to free memory
-			if (batchIndex < batches.size() - 1) {
-				System.gc();
-				Thread.yield(); // Give GC time to work
-			}
-		}
-
-		// Proper shutdown
-		executor.shutdown();
-		try {
-			if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
-				System.err.println("Executor did not terminate gracefully, forcing shutdown");
-				executor.shutdownNow();
-			}
-		} catch (InterruptedException e) {
-			executor.shutdownNow();
-			Thread.currentThread().interrupt();
-		}
+					return outputs.render(image, FilterPlan.Mode.SCALAR, config.isUseTileParallelism());
+				},
+				outputs::save, progress);
 
+		outputs.flush();
+		stats.cachedImages = (int) progress.getCached();
+		stats.imagesProcessed = counts[0] + stats.cachedImages;
+		stats.failedImages = counts[1];
 		stats.totalTime = System.currentTimeMillis() - startTime;
-		System.out.println("Parallel (Fixed Pool): " + stats);
+		progress.close();
+		System.out.println("Parallel (Shared Pool): " + stats);
+		runMetrics.finish(stats);
 		return stats;
 	}
 
 	/**
 	 * Vector API image processing for SIMD acceleration
 	 */
+	@SuppressWarnings("try") // ImageContext is entered for its side effect only
 	public static ProcessingStats processImagesVector(List<Path> imagePaths,
 	                                                  Path outputDir,
 	                                                  ProcessingConfig config) {
@@ -213,53 +165,76 @@ public class ImageProcessor {
 				VectorUtils.getOptimalIntSpecies().length());
 
 		ProcessingStats stats = new ProcessingStats();
+		PipelineMetrics runMetrics = PipelineMetrics.start("vector");
+		ProgressReporter progress = ProgressReporter.start("vector", ImageSource.of(imagePaths));
 		long startTime = System.currentTimeMillis();
 
+		OutputPlan outputs = new OutputPlan(config, cacheKey(config, FilterPlan.Mode.VECTOR), outputDir, "vector_");
+
 		for (Path imagePath : imagePaths) {
-			try {
-				System.out.printf("Processing: %s [Vector API]%n", imagePath.getFileName());
+			try (ImageContext context = ImageContext.enter(imagePath)) {
+				if (outputs.restore(imagePath)) {
+					stats.imagesProcessed++;
+					stats.cachedImages++;
+					progress.imageCached();
+					continue;
+				}
+
+				progress.imageStarted();
+				if (ProgressReporter.isPerImageLogging()) {
+					System.out.printf("Processing: %s [Vector API]%n", imagePath.getFileName());
+				}
 
-				// Load image
-				BufferedImage image = ImageUtils.loadImage(imagePath);
+				// Load image, subsampled when the largest output is much smaller
+				BufferedImage image = outputs.load(imagePath);
 				if (image == null) {
 					System.err.println("Failed to load: " + imagePath);
 					stats.failedImages++;
+					progress.imageFailed();
 					continue;
 				}
 
-				// Apply filters using Vector API
-				BufferedImage processed = applyFiltersVector(image, config.getFilters());
-
-				// Resize
-				if (config.getTargetWidth() > 0 && config.getTargetHeight() > 0) {
-					processed = ImageUtils.resizeImage(processed, config.getTargetWidth(), config.getTargetHeight());
-				}
+				// Apply filters using Vector API, resizing at the point the plan picks
+				List<BufferedImage> processed = outputs.render(image, FilterPlan.Mode.VECTOR, false);
 
-				// Save result
-				Path outputPath = outputDir.resolve("vector_" + imagePath.getFileName());
-				ImageUtils.saveImage(processed, outputPath, config.getCompressionQuality());
+				// Save results
+				outputs.save(imagePath, processed);
 
 				stats.imagesProcessed++;
+				progress.imageCompleted();
 
 			} catch (Exception e) {
 				System.err.println("Error processing " + imagePath + ": " + e.getMessage());
 				e.printStackTrace();
 				stats.failedImages++;
+				progress.imageFailed();
 			}
 		}
 
+		outputs.flush();
 		stats.totalTime = System.currentTimeMillis() - startTime;
+		progress.close();
 		System.out.println("Vector API: " + stats);
+		runMetrics.finish(stats);
 		return stats;
 	}
 
 	/**
-	 * FIXED: Hybrid Vector + Parallel processing with controlled thread pool
+	 * Hybrid Vector + Parallel processing on the shared pool
 	 */
 	public static ProcessingStats processImagesVectorParallel(List<Path> imagePaths,
 	                                                          Path outputDir,
 	                                                          ProcessingConfig config) {
-		System.out.println("=== HYBRID VECTOR + PARALLEL PROCESSING (Fixed Thread Pool) ===");
+		return processImagesVectorParallel(ImageSource.of(imagePaths), outputDir, config);
+	}
+
+	/**
+	 * Same as above, fed from a source that may still be discovering inputs
+	 */
+	public static ProcessingStats processImagesVectorParallel(ImageSource imagePaths,
+	                                                           Path outputDir,
+	                                                           ProcessingConfig config) {
+		System.out.println("=== HYBRID VECTOR + PARALLEL PROCESSING (Shared Pool) ===");
 
 		// Check Vector API support
 		if (!VectorUtils.isVectorAPISupported()) {
@@ -267,306 +242,326 @@ public class ImageProcessor {
 			return processImagesParallel(imagePaths, outputDir, config);
 		}
 
-		System.out.printf("Using hybrid approach with %d threads and Vector API%n", MAX_THREAD_POOL_SIZE);
+		System.out.printf("Using hybrid approach with %d threads and Vector API%n",
+				ProcessingRuntime.get().getParallelism());
 		ProcessingStats stats = new ProcessingStats();
+		PipelineMetrics runMetrics = PipelineMetrics.start("hybrid");
+		ProgressReporter progress = ProgressReporter.start("hybrid", imagePaths);
 		long startTime = System.currentTimeMillis();
 
-		// FIXED: Use controlled ForkJoinPool size
-		ForkJoinPool customThreadPool = new ForkJoinPool(MAX_THREAD_POOL_SIZE);
+		OutputPlan outputs = new OutputPlan(config, cacheKey(config, FilterPlan.Mode.VECTOR), outputDir, "hybrid_");
 
-		try {
-			// Process in batches to control memory usage
-			int batchSize = Math.max(1, MAX_THREAD_POOL_SIZE * 2);
-			List<List<Path>> batches = createBatches(imagePaths, batchSize);
-
-			System.out.printf("Processing %d images in %d batches%n", imagePaths.size(), batches.size());
+		ImagePipeline pipeline = ImagePipeline.withDefaults("hybrid");
+		int[] counts = pipeline.run(skipCached(imagePaths, outputs, progress),
+				imagePath -> MemoryBudget.get().admit(imagePath, config),
+				outputs::load,
+				(imagePath, image) -> {
+					if (ProgressReporter.isPerImageLogging()) {
+						System.out.printf("Processing: %s [Thread: %s, Vector API]%n",
+								imagePath.getFileName(), Thread.currentThread().getName());
+					}
 
-			for (int batchIndex = 0; batchIndex < batches.size(); batchIndex++) {
-				List<Path> batch = batches.get(batchIndex);
-				System.out.printf("Processing batch %d/%d (%d images)%n",
-						batchIndex + 1, batches.size(), batch.size());
+					// Use thread-safe Vector API for filter processing
+					return outputs.render(image, FilterPlan.Mode.VECTOR, true);
+				},
+				outputs::save, progress);
 
-				List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+		outputs.flush();
+		stats.cachedImages = (int) progress.getCached();
+		stats.imagesProcessed = counts[0] + stats.cachedImages;
+		stats.failedImages = counts[1];
+		stats.totalTime = System.currentTimeMillis() - startTime;
+		progress.close();
+		System.out.println("Hybrid Vector+Parallel (Shared Pool): " + stats);
+		runMetrics.finish(stats);
+		return stats;
+	}
 
-				for (Path imagePath : batch) {
-					CompletableFuture<Boolean> future = CompletableFuture.supplyAsync(() -> {
-						try {
-							System.out.printf("Processing: %s [Thread: %s, Vector API]%n",
-									imagePath.getFileName(), Thread.currentThread().getName());
+	/**
+	 * Pipelined processing with file reads and writes on virtual threads; decode, filters,
+	 * resize and encode run on the core-sized shared pool
+	 */
+	public static ProcessingStats processImagesVirtualIO(List<Path> imagePaths,
+	                                                     Path outputDir,
+	                                                     ProcessingConfig config) {
+		return processImagesVirtualIO(ImageSource.of(imagePaths), outputDir, config);
+	}
 
-							BufferedImage image = ImageUtils.loadImage(imagePath);
-							if (image == null) return false;
+	/**
+	 * Same as above, fed from a source that may still be discovering inputs
+	 */
+	public static ProcessingStats processImagesVirtualIO(ImageSource imagePaths,
+	                                                      Path outputDir,
+	                                                      ProcessingConfig config) {
+		System.out.println("=== PIPELINED PROCESSING (Virtual-Thread I/O) ===");
+		System.out.printf("Compute on shared pool: %d threads, I/O on virtual threads%n",
+				ProcessingRuntime.get().getParallelism());
 
-							// Use thread-safe Vector API for filter processing
-							BufferedImage processed = applyFiltersVectorThreadSafe(image, config.getFilters());
+		boolean useVector = VectorUtils.isVectorAPISupported();
+		ProcessingStats stats = new ProcessingStats();
+		PipelineMetrics runMetrics = PipelineMetrics.start("virtual-io");
+		ProgressReporter progress = ProgressReporter.start("virtual-io", imagePaths);
+		long startTime = System.currentTimeMillis();
 
-							if (config.getTargetWidth() > 0 && config.getTargetHeight() > 0) {
-								processed = ImageUtils.resizeImage(processed, config.getTargetWidth(), config.getTargetHeight());
-							}
+		OutputPlan outputs = new OutputPlan(config,
+				cacheKey(config, useVector ? FilterPlan.Mode.VECTOR : FilterPlan.Mode.SCALAR), outputDir, "virtual_");
 
-							Path outputPath = outputDir.resolve("hybrid_" + imagePath.getFileName());
-							ImageUtils.saveImage(processed, outputPath, config.getCompressionQuality());
+		ImagePipeline pipeline = ImagePipeline.withVirtualIo("virtual-io");
+		int[] counts = pipeline.run(skipCached(imagePaths, outputs, progress),
+				imagePath -> MemoryBudget.get().admit(imagePath, config),
+				ImageUtils::readImageBytes,
+				(imagePath, data) -> {
+					if (ProgressReporter.isPerImageLogging()) {
+						System.out.printf("Processing: %s [Thread: %s]%n",
+								imagePath.getFileName(), Thread.currentThread().getName());
+					}
 
-							return true;
-						} catch (OutOfMemoryError e) {
-							System.err.println("Out of memory processing " + imagePath + ": " + e.getMessage());
-							System.gc();
-							return false;
-						} catch (Exception e) {
-							System.err.println("Error processing " + imagePath + ": " + e.getMessage());
-							return false;
-						}
-					}, customThreadPool);
+					BufferedImage image = outputs.decode(data);
+					if (image == null) {
+						throw new IllegalArgumentException("Unsupported image data");
+					}
 
-					futures.add(future);
-				}
+					List<BufferedImage> processed = useVector
+							? outputs.render(image, FilterPlan.Mode.VECTOR, true)
+							: outputs.render(image, FilterPlan.Mode.SCALAR, false);
+					return outputs.encode(imagePath, processed);
+				},
+				outputs::write, progress);
+
+		outputs.flush();
+		stats.cachedImages = (int) progress.getCached();
+		stats.imagesProcessed = counts[0] + stats.cachedImages;
+		stats.failedImages = counts[1];
+		stats.totalTime = System.currentTimeMillis() - startTime;
+		progress.close();
+		System.out.println("Pipelined (Virtual-Thread I/O): " + stats);
+		runMetrics.finish(stats);
+		return stats;
+	}
 
-				// Collect batch results
-				for (CompletableFuture<Boolean> future : futures) {
-					try {
-						Boolean result = future.get(90, TimeUnit.SECONDS);
-						if (result) {
-							stats.imagesProcessed++;
-						} else {
-							stats.failedImages++;
-						}
-					} catch (TimeoutException e) {
-						System.err.println("Vector processing task timed out");
-						future.cancel(true);
-						stats.failedImages++;
-					} catch (Exception e) {
-						System.err.println("Vector processing task failed: " + e.getMessage());
-						stats.failedImages++;
-					}
-				}
+	/**
+	 * Pipelined processing that routes each image to the strategy the AutoTuner predicts is
+	 * fastest for its size and the configured filters
+	 */
+	public static ProcessingStats processImagesAuto(List<Path> imagePaths,
+	                                                Path outputDir,
+	                                                ProcessingConfig config) {
+		return processImagesAuto(ImageSource.of(imagePaths), outputDir, config);
+	}
 
-				// Clear futures and force GC between batches
-				futures.clear();
-				if (batchIndex < batches.size() - 1) {
-					System.gc();
-					Thread.yield();
-				}
-			}
+	/**
+	 * Same as above, fed from a source that may still be discovering inputs. Images take
+	 * different arithmetic paths, so this mode does not use the result cache.
+	 */
+	public static ProcessingStats processImagesAuto(ImageSource imagePaths,
+	                                                Path outputDir,
+	                                                ProcessingConfig config) {
+		System.out.println("=== AUTO-TUNED PROCESSING (Per-Image Strategy) ===");
+		AutoTuner tuner = AutoTuner.get();
 
-		} finally {
-			// Proper cleanup
-			customThreadPool.shutdown();
-			try {
-				if (!customThreadPool.awaitTermination(60, TimeUnit.SECONDS)) {
-					customThreadPool.shutdownNow();
-				}
-			} catch (InterruptedException e) {
-				customThreadPool.shutdownNow();
-				Thread.currentThread().interrupt();
-			}
+		ProcessingStats stats = new ProcessingStats();
+		PipelineMetrics runMetrics = PipelineMetrics.start("auto");
+		ProgressReporter progress = ProgressReporter.start("auto", imagePaths);
+		long startTime = System.currentTimeMillis();
 
-			// Clean up thread-local resources
-			cleanupThreadLocalResources();
+		Map<AutoTuner.Strategy, LongAdder> routes = new EnumMap<>(AutoTuner.Strategy.class);
+		for (AutoTuner.Strategy strategy : AutoTuner.Strategy.values()) {
+			routes.put(strategy, new LongAdder());
 		}
 
+		OutputPlan outputs = new OutputPlan(config, null, outputDir, "auto_");
+
+		ImagePipeline pipeline = ImagePipeline.withDefaults("auto");
+		int[] counts = pipeline.run(imagePaths,
+				imagePath -> MemoryBudget.get().admit(imagePath, config),
+				outputs::load,
+				(imagePath, image) -> {
+					// With renditions the filters run once on the base, so that is what gets routed
+					AutoTuner.Strategy strategy = tuner.choose(image.getWidth(), image.getHeight(),
+							outputs.getFilterConfig(image.getWidth(), image.getHeight()), progress.getInFlight());
+					routes.get(strategy).increment();
+					if (ProgressReporter.isPerImageLogging()) {
+						System.out.printf("Processing: %s [Thread: %s, %s]%n",
+								imagePath.getFileName(), Thread.currentThread().getName(), strategy);
+					}
+
+					return outputs.render(image, strategy.getMode(), strategy.isSplit());
+				},
+				outputs::save, progress);
+
+		stats.imagesProcessed = counts[0];
+		stats.failedImages = counts[1];
 		stats.totalTime = System.currentTimeMillis() - startTime;
-		System.out.println("Hybrid Vector+Parallel (Fixed Pool): " + stats);
+		progress.close();
+		StringJoiner routeSummary = new StringJoiner(", ", "Auto routes: ", "");
+		routes.forEach((strategy, count) -> routeSummary.add(strategy + " " + count.sum()));
+		System.out.println(routeSummary);
+		System.out.println("Auto-Tuned: " + stats);
+		runMetrics.finish(stats);
 		return stats;
 	}
 
 	/**
-	 * HELPER: Create batches of images for controlled processing
+	 * Result cache key: the canonical settings plus the arithmetic mode, which decides the output image type
 	 */
-	private static List<List<Path>> createBatches(List<Path> imagePaths, int batchSize) {
-		List<List<Path>> batches = new ArrayList<>();
-		for (int i = 0; i < imagePaths.size(); i += batchSize) {
-			int end = Math.min(i + batchSize, imagePaths.size());
-			batches.add(new ArrayList<>(imagePaths.subList(i, end)));
-		}
-		return batches;
+	private static String cacheKey(ProcessingConfig config, FilterPlan.Mode mode) {
+		// Off-heap frames keep alpha from any source type, so their outputs can differ
+		return config.getCanonicalKey() + "|mode=" + mode + (OFF_HEAP ? "|storage=offheap" : "");
 	}
 
 	/**
-	 * Apply filters sequentially to an image
+	 * Wrap a source so cached results are restored on the decoder threads and only misses
+	 * enter the pipeline
 	 */
-	public static BufferedImage applyFiltersSequential(BufferedImage image, List<FilterType> filters) {
-		BufferedImage result = ImageUtils.deepCopy(image);
-
-		for (FilterType filter : filters) {
-			result = ImageUtils.applyFilter(result, filter);
-		}
-
-		return result;
+	private static ImageSource skipCached(ImageSource source, OutputPlan outputs, ProgressReporter progress) {
+		return () -> {
+			Path imagePath;
+			while ((imagePath = source.next()) != null) {
+				if (!outputs.restore(imagePath)) {
+					return imagePath;
+				}
+				progress.imageCached();
+			}
+			return null;
+		};
 	}
 
 	/**
-	 * Apply filters using Vector API for SIMD acceleration
+	 * Run the configured filters and resize, splitting the filters around the resize as the
+	 * cost-based ResizePlan chooses for this image's size. parallel splits each filter stage
+	 * across the pool: into tiles for heap images in SCALAR mode, into row bands otherwise.
+	 * The input image is consumed: its buffer and every intermediate go back to the buffer pool,
+	 * and the caller recycles the result once it has been encoded.
 	 */
-	public static BufferedImage applyFiltersVector(BufferedImage image, List<FilterType> filters) {
-		BufferedImage result = ImageUtils.deepCopy(image);
-
-		for (FilterType filter : filters) {
-			result = applyFilterVector(result, filter);
+	static BufferedImage filterAndResize(BufferedImage image, ProcessingConfig config,
+	                                     FilterPlan.Mode mode, boolean parallel) {
+		BufferedImage processed = OFF_HEAP
+				? filterAndResizeOffHeap(image, config, mode, parallel)
+				: filterAndResizeOnHeap(image, config, mode, parallel);
+		if (processed != image) {
+			BufferPool.get().recycle(image);
 		}
-
-		return result;
+		return processed;
 	}
 
 	/**
-	 * Thread-safe Vector API filter application
+	 * filterAndResize with every intermediate a heap image; the input is left for the caller to recycle
 	 */
-	private static BufferedImage applyFiltersVectorThreadSafe(BufferedImage image, List<FilterType> filters) {
-		BufferedImage result = ImageUtils.deepCopy(image);
+	private static BufferedImage filterAndResizeOnHeap(BufferedImage image, ProcessingConfig config,
+	                                                   FilterPlan.Mode mode, boolean parallel) {
+		BiFunction<BufferedImage, List<FilterType>, BufferedImage> filterStep = filterStep(mode, parallel);
 
-		for (FilterType filter : filters) {
-			result = applyFilterVectorThreadSafe(result, filter);
+		if (config.getTargetWidth() <= 0 || config.getTargetHeight() <= 0) {
+			return filterStep.apply(image, config.getFilters());
 		}
 
-		return result;
+		ResizePlan plan = ResizePlan.compile(config.getFilters(), image.getWidth(), image.getHeight(), config);
+		BufferedImage filtered = image;
+		if (!plan.getBeforeResize().isEmpty()) {
+			filtered = filterStep.apply(image, plan.getBeforeResize());
+		}
+		BufferedImage resized = Resampler.resize(filtered, config);
+		if (filtered != image) {
+			BufferPool.get().recycle(filtered);
+		}
+		if (plan.getAfterResize().isEmpty()) {
+			return resized;
+		}
+		BufferedImage processed = filterStep.apply(resized, plan.getAfterResize());
+		BufferPool.get().recycle(resized);
+		return processed;
 	}
 
 	/**
-	 * Tile-level parallelism using ForkJoinPool
+	 * Heap filter function for a mode: tiles for SCALAR and row bands for VECTOR when parallel
 	 */
-	private static BufferedImage applyFiltersParallelTiles(BufferedImage image, List<FilterType> filters) {
-		if (image.getWidth() < TILE_SIZE * 2 || image.getHeight() < TILE_SIZE * 2) {
-			// Image too small for tiling, process sequentially
-			return applyFiltersSequential(image, filters);
+	static BiFunction<BufferedImage, List<FilterType>, BufferedImage> filterStep(FilterPlan.Mode mode, boolean parallel) {
+		if (mode == FilterPlan.Mode.VECTOR) {
+			return parallel ? ImageProcessor::applyFiltersVectorThreadSafe : ImageProcessor::applyFiltersVector;
 		}
+		return parallel ? ImageProcessor::applyFiltersParallelTiles : ImageProcessor::applyFiltersSequential;
+	}
 
-		// Use limited thread pool for tile processing too
-		ForkJoinPool forkJoinPool = new ForkJoinPool(MAX_THREAD_POOL_SIZE);
-		try {
-			BufferedImage result = ImageUtils.deepCopy(image);
+	/**
+	 * filterAndResize with every intermediate in one shared arena per image (shared because bands
+	 * run on pool workers); only the decoded input and the final result are heap images
+	 */
+	private static BufferedImage filterAndResizeOffHeap(BufferedImage image, ProcessingConfig config,
+	                                                    FilterPlan.Mode mode, boolean parallel) {
+		try (Arena arena = Arena.ofShared()) {
+			OffHeapImage frame = OffHeapImage.copyOf(arena, image);
 
-			for (FilterType filter : filters) {
-				result = forkJoinPool.invoke(new TileProcessingTask(result, filter,
-						0, 0, result.getWidth(), result.getHeight()));
+			if (config.getTargetWidth() <= 0 || config.getTargetHeight() <= 0) {
+				return FilterPlan.compile(config.getFilters()).execute(frame, mode, parallel, arena).toBufferedImage();
 			}
 
-			return result;
-		} finally {
-			forkJoinPool.shutdown();
+			ResizePlan plan = ResizePlan.compile(config.getFilters(), frame.getWidth(), frame.getHeight(), config);
+			if (!plan.getBeforeResize().isEmpty()) {
+				frame = FilterPlan.compile(plan.getBeforeResize()).execute(frame, mode, parallel, arena);
+			}
+			frame = Resampler.resize(frame, config, arena);
+			if (!plan.getAfterResize().isEmpty()) {
+				frame = FilterPlan.compile(plan.getAfterResize()).execute(frame, mode, parallel, arena);
+			}
+			return frame.toBufferedImage();
 		}
 	}
 
 	/**
-	 * Vector API filter application using VectorUtils
+	 * Apply filters sequentially to an image
 	 */
-	private static BufferedImage applyFilterVector(BufferedImage image, FilterType filter) {
-		BufferedImage result = ImageUtils.createCompatibleImage(image);
-		int totalPixels = image.getWidth() * image.getHeight();
-		int[] srcPixels = new int[totalPixels];
-		int[] dstPixels = new int[totalPixels];
-
-		ImageUtils.getRGBArray(image, srcPixels);
-
-		switch (filter) {
-			case BRIGHTNESS:
-				VectorUtils.adjustBrightness(srcPixels, dstPixels, 30);
-				break;
-			case CONTRAST:
-				VectorUtils.adjustContrast(srcPixels, dstPixels, 1.2f);
-				break;
-			case GRAYSCALE:
-				VectorUtils.convertToGrayscale(srcPixels, dstPixels);
-				break;
-			case BLUR:
-				float[] blurKernel = {1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f};
-				VectorUtils.applyConvolutionVector(image, result, blurKernel, 3);
-				return result;
-			case SHARPEN:
-				float[] sharpenKernel = {0, -1, 0, -1, 5, -1, 0, -1, 0};
-				VectorUtils.applyConvolutionVector(image, result, sharpenKernel, 3);
-				return result;
-			default:
-				return ImageUtils.deepCopy(image);
-		}
-
-		ImageUtils.setRGBArray(result, dstPixels);
-		return result;
+	public static BufferedImage applyFiltersSequential(BufferedImage image, List<FilterType> filters) {
+		return FilterPlan.compile(filters).execute(image, FilterPlan.Mode.SCALAR);
 	}
 
 	/**
-	 * Thread-safe Vector API filter application with thread-local buffers
+	 * Apply filters using Vector API for SIMD acceleration
 	 */
-	private static BufferedImage applyFilterVectorThreadSafe(BufferedImage image, FilterType filter) {
-		BufferedImage result = ImageUtils.createCompatibleImage(image);
-		int totalPixels = image.getWidth() * image.getHeight();
-
-		// Use thread-local buffers to avoid conflicts
-		int[] srcPixels = getThreadLocalSrcBuffer(totalPixels);
-		int[] dstPixels = getThreadLocalDstBuffer(totalPixels);
-
-		ImageUtils.getRGBArray(image, srcPixels);
-
-		// Apply filter with thread safety considerations
-		try {
-			switch (filter) {
-				case BRIGHTNESS:
-					VectorUtils.adjustBrightness(srcPixels, dstPixels, 30);
-					break;
-				case CONTRAST:
-					VectorUtils.adjustContrast(srcPixels, dstPixels, 1.2f);
-					break;
-				case GRAYSCALE:
-					VectorUtils.convertToGrayscale(srcPixels, dstPixels);
-					break;
-				case BLUR:
-					// For convolution operations, use synchronization if needed
-					synchronized (VECTOR_LOCK) {
-						float[] blurKernel = {1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f};
-						VectorUtils.applyConvolutionVector(image, result, blurKernel, 3);
-					}
-					return result;
-				case SHARPEN:
-					synchronized (VECTOR_LOCK) {
-						float[] sharpenKernel = {0, -1, 0, -1, 5, -1, 0, -1, 0};
-						VectorUtils.applyConvolutionVector(image, result, sharpenKernel, 3);
-					}
-					return result;
-				default:
-					return ImageUtils.deepCopy(image);
-			}
-
-			ImageUtils.setRGBArray(result, dstPixels);
-			return result;
-
-		} catch (Exception e) {
-			System.err.println("Vector operation failed, falling back to sequential: " + e.getMessage());
-			// Fallback to sequential processing
-			return ImageUtils.applyFilter(ImageUtils.deepCopy(image), filter);
-		}
+	public static BufferedImage applyFiltersVector(BufferedImage image, List<FilterType> filters) {
+		return FilterPlan.compile(filters).execute(image, FilterPlan.Mode.VECTOR);
 	}
 
 	/**
-	 * Get thread-local source buffer, resize if needed
+	 * Thread-safe Vector API filter application
 	 */
-	private static int[] getThreadLocalSrcBuffer(int requiredSize) {
-		int[] buffer = THREAD_LOCAL_SRC_BUFFER.get();
-		if (buffer.length < requiredSize) {
-			buffer = new int[Math.max(requiredSize, buffer.length * 2)];
-			THREAD_LOCAL_SRC_BUFFER.set(buffer);
-		}
-		return buffer;
+	private static BufferedImage applyFiltersVectorThreadSafe(BufferedImage image, List<FilterType> filters) {
+		// Each band owns its scratch rows, so stencils scale across the pool without a lock
+		return FilterPlan.compile(filters).execute(image, FilterPlan.Mode.VECTOR, true);
 	}
 
 	/**
-	 * Get thread-local destination buffer, resize if needed
+	 * Tile-level parallelism on the shared ForkJoin pool
 	 */
-	private static int[] getThreadLocalDstBuffer(int requiredSize) {
-		int[] buffer = THREAD_LOCAL_DST_BUFFER.get();
-		if (buffer.length < requiredSize) {
-			buffer = new int[Math.max(requiredSize, buffer.length * 2)];
-			THREAD_LOCAL_DST_BUFFER.set(buffer);
+	private static BufferedImage applyFiltersParallelTiles(BufferedImage image, List<FilterType> filters) {
+		if (image.getWidth() < TILE_SIZE * 2 || image.getHeight() < TILE_SIZE * 2) {
+			// Image too small for tiling, process sequentially
+			return applyFiltersSequential(image, filters);
 		}
-		return buffer;
-	}
 
-	/**
-	 * Clean up thread-local resources
-	 */
-	private static void cleanupThreadLocalResources() {
-		try {
-			THREAD_LOCAL_SRC_BUFFER.remove();
-			THREAD_LOCAL_DST_BUFFER.remove();
-		} catch (Exception e) {
-			System.err.println("Warning: Failed to clean up thread-local resources: " + e.getMessage());
+		FilterPlan plan = FilterPlan.compile(filters);
+		if (plan.getStages().isEmpty()) {
+			return ImageUtils.deepCopy(image);
 		}
+
+		BufferedImage current = image;
+		for (FilterPlan.Stage stage : plan.getStages()) {
+			FilterStageEvent event = FilterStageEvent.start();
+			long start = System.nanoTime();
+			// Every tile of a stage writes into the same preallocated destination
+			BufferedImage source = current;
+			BufferedImage target = FilterPlan.createTarget(image, FilterPlan.Mode.SCALAR);
+			ProcessingRuntime.get().invoke(new TileProcessingTask(
+					(x, y, width, height) -> FilterPlan.executeStage(stage, source, target,
+							x, y, width, height, FilterPlan.Mode.SCALAR),
+					0, 0, image.getWidth(), image.getHeight()));
+			if (source != image) {
+				BufferPool.get().recycle(source);
+			}
+			stage.record(start, image.getWidth(), image.getHeight());
+			event.finish(stage, FilterPlan.Mode.SCALAR, "tiles", image.getWidth(), image.getHeight());
+			current = target;
+		}
+
+		return current;
 	}
-}
\ No newline at end of file
+}
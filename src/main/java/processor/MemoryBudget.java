@@ -0,0 +1,185 @@
+package processor;
+
+import config.ProcessingConfig;
+import config.Rendition;
+import util.BufferPool;
+import util.ImageUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide admission control for image memory. Before an image is read, its header is
+ * used to estimate the bytes it will hold while in flight (decoded pixels x 4 bytes x the
+ * buffers alive at once), and that weight is taken from a heap budget through a fair weighted
+ * semaphore. Small images run as wide as the pipeline allows; large ones wait until earlier
+ * images have been written. An image larger than the whole budget runs alone. The number of
+ * images admitted at once is also capped by the adaptive ConcurrencyController.
+ *
+ * The budget defaults to 60% of the maximum heap; set imageprocessor.memory.budgetMB to override it.
+ */
+public final class MemoryBudget {
+
+	private static final Logger LOGGER = Logger.getLogger(MemoryBudget.class.getName());
+
+	private static final int BYTES_PER_PIXEL = 4;
+	// Source-resolution images alive at once: the decoded image, a filter stage output and its successor
+	private static final int SOURCE_BUFFERS = 3;
+	// Resampler horizontal pass: four float channel planes of one output column per source row
+	private static final int RESAMPLE_PLANES = 4;
+	// Resized image plus one filter stage output after the resize
+	private static final int TARGET_BUFFERS = 2;
+	private static final double DEFAULT_HEAP_FRACTION = 0.6;
+	// Permits are counted in KB so budgets beyond 2 GB fit an int semaphore
+	private static final int UNIT = 1024;
+
+	private static final MemoryBudget INSTANCE = new MemoryBudget(configuredBudget());
+
+	/**
+	 * Memory held by one admitted image; closing it returns the memory to the budget.
+	 * Closing more than once has no effect.
+	 */
+	public static final class Permit implements AutoCloseable {
+		private final MemoryBudget budget;
+		private final int units;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Permit(MemoryBudget budget, int units) {
+			this.budget = budget;
+			this.units = units;
+		}
+
+		public long getBytes() {
+			return (long) units * UNIT;
+		}
+
+		@Override
+		public void close() {
+			if (released.compareAndSet(false, true)) {
+				budget.semaphore.release(units);
+				ConcurrencyController.get().release();
+			}
+		}
+	}
+
+	private final long budgetBytes;
+	private final int totalUnits;
+	private final Semaphore semaphore;
+
+	private MemoryBudget(long budgetBytes) {
+		this.totalUnits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / UNIT));
+		this.budgetBytes = (long) totalUnits * UNIT;
+		// Fair, so a large image at the head of the queue is not starved by a stream of small ones
+		this.semaphore = new Semaphore(totalUnits, true);
+	}
+
+	public static MemoryBudget get() {
+		return INSTANCE;
+	}
+
+	private static long configuredBudget() {
+		long configuredMb = Long.getLong("imageprocessor.memory.budgetMB", 0);
+		if (configuredMb > 0) {
+			return configuredMb * 1024 * 1024;
+		}
+		return (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION);
+	}
+
+	public long getBudgetBytes() {
+		return budgetBytes;
+	}
+
+	/**
+	 * Bytes currently reserved by admitted images
+	 */
+	public long getReservedBytes() {
+		return (long) (totalUnits - semaphore.availablePermits()) * UNIT;
+	}
+
+	/**
+	 * Block until the image at imagePath fits in the budget and the concurrency controller
+	 * allows another image in flight
+	 */
+	public Permit admit(Path imagePath, ProcessingConfig config) throws InterruptedException {
+		long bytes = estimateBytes(imagePath, config);
+		int units = (int) Math.min(totalUnits, Math.max(1, (bytes + UNIT - 1) / UNIT));
+		ConcurrencyController.get().acquire();
+		try {
+			if (!semaphore.tryAcquire(units)) {
+				LOGGER.fine(String.format("Waiting for %d MB of memory budget for %s (%d MB reserved)",
+						bytes / 1024 / 1024, imagePath.getFileName(), getReservedBytes() / 1024 / 1024));
+				semaphore.acquire(units);
+			}
+		} catch (InterruptedException e) {
+			ConcurrencyController.get().release();
+			throw e;
+		}
+		return new Permit(this, units);
+	}
+
+	/**
+	 * Estimated peak bytes for one image, from its header and the configured output size.
+	 * Includes the encoded file, which the virtual I/O pipeline holds in memory.
+	 */
+	public static long estimateBytes(Path imagePath, ProcessingConfig config) {
+		long fileSize;
+		try {
+			fileSize = Files.size(imagePath);
+		} catch (IOException e) {
+			fileSize = 0;
+		}
+
+		int[] size = ImageUtils.readDimensions(imagePath);
+		if (size == null) {
+			// Unreadable header: the decode fails fast, so only the encoded bytes count
+			return fileSize;
+		}
+		return fileSize + estimateBytes(size[0], size[1], config);
+	}
+
+	/**
+	 * Estimated peak bytes for processing a source of the given size, after decoder subsampling.
+	 * Frames and planes are counted at the power-of-two length the buffer pool leases them at.
+	 */
+	public static long estimateBytes(int width, int height, ProcessingConfig config) {
+		int targetWidth = config.getTargetWidth();
+		int targetHeight = config.getTargetHeight();
+		int factor = ImageUtils.getSubsamplingFactor(width, height, config.getDecodeWidth(), config.getDecodeHeight());
+		int decodedWidth = (width + factor - 1) / factor;
+		int decodedHeight = (height + factor - 1) / factor;
+		long sourcePixels = (long) decodedWidth * decodedHeight;
+
+		long bytes = pooledBytes(sourcePixels) * SOURCE_BUFFERS;
+		if (config.hasRenditions()) {
+			// Filtered base at up to the decoded size, its halved levels (a third of the base),
+			// the planes of the first halving and every rendition until it is written
+			bytes += pooledBytes(sourcePixels / 3);
+			bytes += pooledBytes((long) (decodedWidth / 2) * decodedHeight) * RESAMPLE_PLANES;
+			for (Rendition rendition : config.getRenditions()) {
+				int[] outSize = Resampler.getOutputSize(decodedWidth, decodedHeight,
+						rendition.getWidth(), rendition.getHeight(), rendition.getFitMode());
+				bytes += pooledBytes((long) outSize[0] * outSize[1]);
+			}
+		} else if (targetWidth > 0 && targetHeight > 0) {
+			int[] outSize = Resampler.getOutputSize(decodedWidth, decodedHeight,
+					targetWidth, targetHeight, config.getFitMode());
+			bytes += pooledBytes((long) outSize[0] * decodedHeight) * RESAMPLE_PLANES;
+			bytes += pooledBytes((long) outSize[0] * outSize[1]) * TARGET_BUFFERS;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Bytes of a pooled buffer of 4-byte elements (ints or floats)
+	 */
+	private static long pooledBytes(long elements) {
+		if (elements > Integer.MAX_VALUE) {
+			return elements * BYTES_PER_PIXEL;
+		}
+		return (long) BufferPool.capacityFor((int) elements) * BYTES_PER_PIXEL;
+	}
+}
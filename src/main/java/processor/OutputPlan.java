@@ -0,0 +1,173 @@
+package processor;
+
+import config.ProcessingConfig;
+import config.Rendition;
+import util.BufferPool;
+import util.ImageUtils;
+import util.ResultCache;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The files one run writes for each input: a single output, or one per configured rendition
+ * derived from a single decode. Each output has its own result cache, and an input only counts
+ * as cached when every one of its outputs could be restored.
+ */
+final class OutputPlan {
+
+	private final ProcessingConfig config;
+	private final Path outputDir;
+	private final String prefix;
+	private final List<ResultCache> caches = new ArrayList<>();
+
+	/**
+	 * cacheKey identifies the run's settings and arithmetic mode, or is null for an uncached run
+	 */
+	OutputPlan(ProcessingConfig config, String cacheKey, Path outputDir, String prefix) {
+		this.config = config;
+		this.outputDir = outputDir;
+		this.prefix = prefix;
+		if (cacheKey == null) {
+			return;
+		}
+		if (!config.hasRenditions()) {
+			caches.add(ResultCache.open(cacheKey));
+			return;
+		}
+		for (Rendition rendition : config.getRenditions()) {
+			caches.add(ResultCache.open(cacheKey + "|rendition=" + rendition.getCanonicalKey()));
+		}
+	}
+
+	/**
+	 * Decode an input, subsampled as far as the largest output allows
+	 */
+	BufferedImage load(Path imagePath) throws IOException {
+		return ImageUtils.loadImage(imagePath, config.getDecodeWidth(), config.getDecodeHeight());
+	}
+
+	/**
+	 * Decode an input already read into memory, subsampled as far as the largest output allows
+	 */
+	BufferedImage decode(byte[] data) throws IOException {
+		return ImageUtils.decodeImage(data, config.getDecodeWidth(), config.getDecodeHeight());
+	}
+
+	/**
+	 * Settings the filters and first resize run with for a width x height decode
+	 */
+	ProcessingConfig getFilterConfig(int width, int height) {
+		return config.hasRenditions() ? RenditionPyramid.baseConfig(width, height, config) : config;
+	}
+
+	/**
+	 * Output files for an input, in rendition order
+	 */
+	List<Path> outputPaths(Path imagePath) {
+		String fileName = imagePath.getFileName().toString();
+		if (!config.hasRenditions()) {
+			return Collections.singletonList(outputDir.resolve(prefix + fileName));
+		}
+		List<Path> paths = new ArrayList<>();
+		for (Rendition rendition : config.getRenditions()) {
+			paths.add(outputDir.resolve(prefix + rendition.getOutputFileName(fileName)));
+		}
+		return paths;
+	}
+
+	/**
+	 * Restore every output of an input from the cache; false if any of them missed
+	 */
+	boolean restore(Path imagePath) {
+		if (caches.isEmpty()) {
+			return false;
+		}
+		List<Path> paths = outputPaths(imagePath);
+		for (int i = 0; i < paths.size(); i++) {
+			if (!caches.get(i).restore(imagePath, paths.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Filter and resize a decoded image into every output. The input is consumed and the
+	 * results are handed to save() or encode(), which recycle them.
+	 */
+	List<BufferedImage> render(BufferedImage image, FilterPlan.Mode mode, boolean parallel) {
+		if (config.hasRenditions()) {
+			return RenditionPyramid.render(image, config, mode, parallel);
+		}
+		return Collections.singletonList(ImageProcessor.filterAndResize(image, config, mode, parallel));
+	}
+
+	/**
+	 * Write and cache every output of an input, recycling the images
+	 */
+	void save(Path imagePath, List<BufferedImage> images) throws IOException {
+		List<Path> paths = outputPaths(imagePath);
+		try {
+			for (int i = 0; i < images.size(); i++) {
+				ImageUtils.saveImage(images.get(i), paths.get(i), getQuality(i));
+				store(imagePath, i, paths.get(i));
+			}
+		} finally {
+			images.forEach(BufferPool.get()::recycle);
+		}
+	}
+
+	/**
+	 * Encode every output of an input in memory, recycling the images
+	 */
+	List<byte[]> encode(Path imagePath, List<BufferedImage> images) throws IOException {
+		List<Path> paths = outputPaths(imagePath);
+		List<byte[]> encoded = new ArrayList<>();
+		try {
+			for (int i = 0; i < images.size(); i++) {
+				encoded.add(ImageUtils.encodeImage(images.get(i), paths.get(i), getQuality(i)));
+			}
+		} finally {
+			images.forEach(BufferPool.get()::recycle);
+		}
+		return encoded;
+	}
+
+	/**
+	 * Write and cache outputs produced by encode()
+	 */
+	void write(Path imagePath, List<byte[]> encoded) throws IOException {
+		List<Path> paths = outputPaths(imagePath);
+		for (int i = 0; i < encoded.size(); i++) {
+			ImageUtils.writeImageBytes(encoded.get(i), paths.get(i));
+			store(imagePath, i, paths.get(i));
+		}
+	}
+
+	/**
+	 * Persist the cache indexes at the end of a run
+	 */
+	void flush() {
+		// The stamp index is shared by every cache
+		if (!caches.isEmpty()) {
+			caches.get(0).flush();
+		}
+	}
+
+	private float getQuality(int output) {
+		return config.hasRenditions()
+				? config.getRenditions().get(output).getQuality()
+				: config.getCompressionQuality();
+	}
+
+	private void store(Path imagePath, int output, Path outputPath) {
+		if (!caches.isEmpty()) {
+			caches.get(output).store(imagePath, outputPath);
+		}
+	}
+}
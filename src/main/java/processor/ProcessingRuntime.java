@@ -0,0 +1,61 @@
+package processor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide processing runtime that owns the shared work-stealing pool.
+ * Image-level tasks and the tile/band tasks they spawn all run on the same workers,
+ * so nested parallelism steals work instead of adding threads.
+ */
+public final class ProcessingRuntime {
+
+	private static final ProcessingRuntime INSTANCE =
+			new ProcessingRuntime(Runtime.getRuntime().availableProcessors());
+
+	private final ForkJoinPool pool;
+
+	private ProcessingRuntime(int parallelism) {
+		AtomicInteger threadIndex = new AtomicInteger();
+		ForkJoinPool.ForkJoinWorkerThreadFactory factory = p -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			thread.setName("image-worker-" + threadIndex.incrementAndGet());
+			return thread;
+		};
+		// Workers are daemon threads, so the pool never has to be shut down
+		this.pool = new ForkJoinPool(Math.max(1, parallelism), factory, null, false);
+	}
+
+	public static ProcessingRuntime get() {
+		return INSTANCE;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Submit an image-level task to the shared pool
+	 */
+	public <T> ForkJoinTask<T> submit(Callable<T> task) {
+		return pool.submit(task);
+	}
+
+	/**
+	 * Run a task to completion; when already on a worker of this pool the task runs inline
+	 * and its forks are stolen by idle workers
+	 */
+	public <T> T invoke(ForkJoinTask<T> task) {
+		if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) {
+			return task.invoke();
+		}
+		return pool.invoke(task);
+	}
+}
@@ -0,0 +1,185 @@
+package processor;
+
+import metrics.PipelineMetrics;
+import util.ImageSource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Live progress of one processing run. Workers count images into LongAdders, so updates never
+ * contend; a single reporter thread prints images/s, megapixels/s, images in flight, queue depth
+ * and ETA at a fixed interval. Rates cover the last interval, the ETA the whole run so far.
+ *
+ * Settings come from system properties:
+ * imageprocessor.progress.intervalMs (default 2000, 0 turns the reporter off),
+ * imageprocessor.progress.perImage (true/false, default false) prints a line per image as well.
+ */
+public final class ProgressReporter implements AutoCloseable {
+
+	private static final long INTERVAL_MILLIS = Long.getLong("imageprocessor.progress.intervalMs", 2000);
+	private static final boolean PER_IMAGE = Boolean.getBoolean("imageprocessor.progress.perImage");
+
+	private final String run;
+	private final ImageSource source;
+	private final long startNanos = System.nanoTime();
+	private final LongAdder started = new LongAdder();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder cached = new LongAdder();
+	private volatile IntSupplier queueDepth = () -> 0;
+	private final Thread reporter;
+
+	// Reporter thread only: totals at the previous report
+	private long lastNanos = startNanos;
+	private long lastImages;
+	private long lastPixels;
+
+	private ProgressReporter(String run, ImageSource source, boolean report) {
+		this.run = run;
+		this.source = source;
+		if (report && INTERVAL_MILLIS > 0) {
+			reporter = new Thread(this::reportLoop, "progress-" + run);
+			reporter.setDaemon(true);
+			reporter.start();
+		} else {
+			reporter = null;
+		}
+	}
+
+	/**
+	 * Begin reporting a run over source; the total comes from the source when it knows it
+	 */
+	public static ProgressReporter start(String run, ImageSource source) {
+		return new ProgressReporter(run, source, true);
+	}
+
+	/**
+	 * Counters without a reporter thread, for pipelines run outside a reported run
+	 */
+	public static ProgressReporter untracked() {
+		return new ProgressReporter("untracked", null, false);
+	}
+
+	/**
+	 * Whether each image should also get its own console line
+	 */
+	public static boolean isPerImageLogging() {
+		return PER_IMAGE;
+	}
+
+	/**
+	 * Report the images waiting between pipeline stages from now on
+	 */
+	public void setQueueDepth(IntSupplier queueDepth) {
+		this.queueDepth = queueDepth;
+	}
+
+	/**
+	 * An image was admitted and is now in flight
+	 */
+	public void imageStarted() {
+		started.increment();
+	}
+
+	/**
+	 * An in-flight image was written
+	 */
+	public void imageCompleted() {
+		completed.increment();
+	}
+
+	/**
+	 * An in-flight image was dropped after an error
+	 */
+	public void imageFailed() {
+		failed.increment();
+	}
+
+	/**
+	 * An image was restored from the result cache without being processed
+	 */
+	public void imageCached() {
+		cached.increment();
+	}
+
+	public long getCompleted() {
+		return completed.sum();
+	}
+
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	public long getCached() {
+		return cached.sum();
+	}
+
+	/**
+	 * Images admitted but not yet written or dropped
+	 */
+	public long getInFlight() {
+		// Read the finishing counters first, so a racing update can only overstate in-flight work
+		long finished = completed.sum() + failed.sum();
+		return Math.max(0, started.sum() - finished);
+	}
+
+	private void reportLoop() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				TimeUnit.MILLISECONDS.sleep(INTERVAL_MILLIS);
+				System.out.println(report());
+			}
+		} catch (InterruptedException e) {
+			// Run finished
+		}
+	}
+
+	private String report() {
+		long now = System.nanoTime();
+		long images = completed.sum() + failed.sum();
+		long pixels = PipelineMetrics.current().getPixels(PipelineMetrics.DECODE);
+		double seconds = Math.max(1e-9, (now - lastNanos) / 1e9);
+		double imagesPerSecond = (images - lastImages) / seconds;
+		double megapixelsPerSecond = (pixels - lastPixels) / 1e6 / seconds;
+		lastNanos = now;
+		lastImages = images;
+		lastPixels = pixels;
+
+		long done = images + cached.sum();
+		int known = source == null ? -1 : source.getKnownCount();
+		String total = known < 0 ? "?" : source.isCountFinal() ? Integer.toString(known) : known + "+";
+		String percent = known > 0 ? String.format(" (%.1f%%)", 100.0 * done / known) : "";
+		return String.format("Progress [%s]: %d/%s images%s, %.1f images/s, %.1f MP/s, %d in flight, %d queued, ETA %s",
+				run, done, total, percent, imagesPerSecond, megapixelsPerSecond,
+				getInFlight(), queueDepth.getAsInt(), eta(now, images, known, known - done));
+	}
+
+	/**
+	 * Time left at the average rate of the run so far; cache hits are excluded as they cost next to nothing
+	 */
+	private String eta(long now, long processed, int known, long remaining) {
+		if (known < 0 || processed == 0) {
+			return "unknown";
+		}
+		long seconds = (long) (Math.max(0, remaining) * ((now - startNanos) / 1e9) / processed);
+		String eta = String.format("%dm %02ds", seconds / 60, seconds % 60);
+		return source.isCountFinal() ? eta : ">" + eta;
+	}
+
+	/**
+	 * Stop the reporter thread; the run's own summary follows
+	 */
+	@Override
+	public void close() {
+		if (reporter != null) {
+			reporter.interrupt();
+			try {
+				reporter.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package processor;
+
+import config.ProcessingConfig;
+import config.Rendition;
+import model.FitMode;
+import model.ResampleFilter;
+import util.BufferPool;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Derives every rendition of one image from a single filtered base. The filters run once, at
+ * the smallest size that still covers the largest rendition; each further level halves the one
+ * above it, and each rendition is resampled from the smallest level that still covers it, so
+ * the final filter never reduces by more than 2x and N sizes cost little more than one.
+ */
+final class RenditionPyramid {
+
+	// Below this much reduction the base keeps the decoded size rather than paying for a resize
+	private static final double MIN_BASE_REDUCTION = 0.9;
+
+	private RenditionPyramid() {
+	}
+
+	/**
+	 * Settings for the filtered base of a width x height decode: the configured filters and
+	 * resample filter, resized (uniformly) only as far as every rendition allows
+	 */
+	static ProcessingConfig baseConfig(int width, int height, ProcessingConfig config) {
+		double scale = 0;
+		for (Rendition rendition : config.getRenditions()) {
+			scale = Math.max(scale, requiredScale(width, height, rendition));
+		}
+		if (scale >= MIN_BASE_REDUCTION) {
+			return new ProcessingConfig(config.getFilters(), 0, 0, config.getCompressionQuality(),
+					config.isUseTileParallelism(), config.getResampleFilter(), FitMode.EXACT);
+		}
+		int baseWidth = Math.max(1, (int) Math.ceil(width * scale));
+		int baseHeight = Math.max(1, (int) Math.ceil(height * scale));
+		return new ProcessingConfig(config.getFilters(), baseWidth, baseHeight, config.getCompressionQuality(),
+				config.isUseTileParallelism(), config.getResampleFilter(), FitMode.EXACT);
+	}
+
+	/**
+	 * Filter and resize the decoded image once, then resample every rendition from the pyramid.
+	 * The input is consumed; results are in rendition order and the caller recycles them.
+	 */
+	static List<BufferedImage> render(BufferedImage image, ProcessingConfig config,
+	                                  FilterPlan.Mode mode, boolean parallel) {
+		List<BufferedImage> levels = new ArrayList<>();
+		levels.add(ImageProcessor.filterAndResize(image,
+				baseConfig(image.getWidth(), image.getHeight(), config), mode, parallel));
+
+		List<BufferedImage> outputs = new ArrayList<>();
+		try {
+			for (Rendition rendition : config.getRenditions()) {
+				BufferedImage level = coveringLevel(levels, rendition);
+				outputs.add(Resampler.resize(level, rendition.getWidth(), rendition.getHeight(),
+						config.getResampleFilter(), rendition.getFitMode()));
+			}
+		} catch (RuntimeException e) {
+			outputs.forEach(BufferPool.get()::recycle);
+			throw e;
+		} finally {
+			levels.forEach(BufferPool.get()::recycle);
+		}
+		return outputs;
+	}
+
+	/**
+	 * Smallest level that still covers a rendition, halving the last level while the next one would
+	 */
+	private static BufferedImage coveringLevel(List<BufferedImage> levels, Rendition rendition) {
+		int index = 0;
+		while (true) {
+			BufferedImage level = levels.get(index);
+			int halfWidth = level.getWidth() / 2;
+			int halfHeight = level.getHeight() / 2;
+			if (halfWidth == 0 || halfHeight == 0 || requiredScale(halfWidth, halfHeight, rendition) > 1) {
+				return level;
+			}
+			if (index + 1 == levels.size()) {
+				levels.add(Resampler.resize(level, halfWidth, halfHeight, ResampleFilter.BILINEAR, FitMode.EXACT));
+			}
+			index++;
+		}
+	}
+
+	/**
+	 * Uniform scale a width x height source needs to reach for the rendition's pixels;
+	 * anything above 1 would be an upscale
+	 */
+	private static double requiredScale(int width, int height, Rendition rendition) {
+		double scaleX = (double) rendition.getWidth() / width;
+		double scaleY = (double) rendition.getHeight() / height;
+		return rendition.getFitMode() == FitMode.FIT ? Math.min(scaleX, scaleY) : Math.max(scaleX, scaleY);
+	}
+}
@@ -0,0 +1,520 @@
+package processor;
+
+import config.ProcessingConfig;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import metrics.PipelineMetrics;
+import metrics.ResizeEvent;
+import model.FitMode;
+import model.ResampleFilter;
+import task.RowBandTask;
+import util.BufferPool;
+import util.OffHeapImage;
+import util.PixelAccess;
+import util.PixelRows;
+import util.VectorUtils;
+
+import java.awt.image.BufferedImage;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Separable image resampler: a horizontal pass into float planes followed by a vertical pass,
+ * both on Vector API lanes and split into row bands on the shared processing pool.
+ * Kernels are widened by the scale factor on reductions so large downscales do not alias.
+ */
+public final class Resampler {
+
+	private static final VectorSpecies<Float> FLOAT_SPECIES = VectorUtils.FLOAT_SPECIES;
+	private static final VectorSpecies<Integer> INT_SPECIES = VectorUtils.INT_SPECIES;
+	private static final int MAX_CACHED_TABLES = 256;
+
+	/**
+	 * Weights for resampling one axis, stored tap-major so each tap is a contiguous run of
+	 * output samples: sample i reads source index[k * length + i] with weight[k * length + i]
+	 */
+	private static final class WeightTable {
+		private final int taps;
+		private final int length;
+		private final int[] index;
+		private final float[] weight;
+
+		private WeightTable(int taps, int length, int[] index, float[] weight) {
+			this.taps = taps;
+			this.length = length;
+			this.index = index;
+			this.weight = weight;
+		}
+	}
+
+	// Tables depend only on filter and the two lengths, which repeat across a batch
+	private static final Map<String, WeightTable> TABLES = new ConcurrentHashMap<>();
+
+	private Resampler() {
+	}
+
+	/**
+	 * Resize to the configured target size, filter and fit mode
+	 */
+	public static BufferedImage resize(BufferedImage image, ProcessingConfig config) {
+		return resize(image, config.getTargetWidth(), config.getTargetHeight(),
+				config.getResampleFilter(), config.getFitMode());
+	}
+
+	/**
+	 * Resize an image into a targetWidth x targetHeight box. Alpha is kept (premultiplied while
+	 * filtering) when the source has it; the result is TYPE_INT_ARGB or TYPE_INT_RGB over a
+	 * pooled buffer, and the float planes are leased for the duration of the call.
+	 */
+	public static BufferedImage resize(BufferedImage image, int targetWidth, int targetHeight,
+	                                   ResampleFilter filter, FitMode fitMode) {
+		ResizeEvent event = ResizeEvent.start();
+		long start = System.nanoTime();
+		int[] region = getSourceRegion(image.getWidth(), image.getHeight(), targetWidth, targetHeight, fitMode);
+		int x0 = region[0], y0 = region[1], regionWidth = region[2], regionHeight = region[3];
+		int outWidth = region[4], outHeight = region[5];
+
+		boolean alpha = image.getColorModel().hasAlpha();
+		BufferedImage result = BufferPool.get().createImage(outWidth, outHeight, alpha);
+
+		WeightTable horizontal = getTable(filter, regionWidth, outWidth);
+		WeightTable vertical = getTable(filter, regionHeight, outHeight);
+		int channels = alpha ? 4 : 3;
+
+		PixelAccess src = PixelAccess.of(image);
+		PixelAccess dst = PixelAccess.of(result);
+
+		try (BufferPool.Lease<float[][]> planeLease = BufferPool.get().leaseFloatRows(channels, regionHeight * outWidth)) {
+			float[][] planes = planeLease.get();
+			RowBandTask.run(ProcessingRuntime.get().getPool(), regionHeight, (rowStart, rowEnd) ->
+					resampleRows(src, x0, y0, regionWidth, rowStart, rowEnd, horizontal, planes));
+			RowBandTask.run(ProcessingRuntime.get().getPool(), outHeight, (rowStart, rowEnd) ->
+					resampleColumns(planes, outWidth, rowStart, rowEnd, vertical, dst));
+		}
+		recordResize(start, regionWidth, regionHeight);
+		event.finish(filter, regionWidth, regionHeight, outWidth, outHeight);
+		return result;
+	}
+
+	/**
+	 * Resize an off-heap frame to the configured target. The float planes and the result are
+	 * allocated from the arena, so nothing proportional to the image size lands on the heap.
+	 * Same results as the BufferedImage version.
+	 */
+	public static OffHeapImage resize(OffHeapImage image, ProcessingConfig config, Arena arena) {
+		ResizeEvent event = ResizeEvent.start();
+		long start = System.nanoTime();
+		int[] region = getSourceRegion(image.getWidth(), image.getHeight(),
+				config.getTargetWidth(), config.getTargetHeight(), config.getFitMode());
+		int x0 = region[0], y0 = region[1], regionWidth = region[2], regionHeight = region[3];
+		int outWidth = region[4], outHeight = region[5];
+
+		boolean alpha = image.hasAlpha();
+		OffHeapImage result = OffHeapImage.allocate(arena, outWidth, outHeight, alpha);
+
+		WeightTable horizontal = getTable(config.getResampleFilter(), regionWidth, outWidth);
+		WeightTable vertical = getTable(config.getResampleFilter(), regionHeight, outHeight);
+		int channels = alpha ? 4 : 3;
+		long planeBytes = (long) regionHeight * outWidth * Float.BYTES;
+		MemorySegment planes = arena.allocate(planeBytes * channels, Float.BYTES);
+
+		RowBandTask.run(ProcessingRuntime.get().getPool(), regionHeight, (rowStart, rowEnd) ->
+				resampleRows(image, x0, y0, regionWidth, rowStart, rowEnd, horizontal, planes, planeBytes, channels));
+		RowBandTask.run(ProcessingRuntime.get().getPool(), outHeight, (rowStart, rowEnd) ->
+				resampleColumns(planes, planeBytes, channels, outWidth, rowStart, rowEnd, vertical, result));
+		recordResize(start, regionWidth, regionHeight);
+		event.finish(config.getResampleFilter(), regionWidth, regionHeight, outWidth, outHeight);
+		return result;
+	}
+
+	/**
+	 * Record a resize in the run metrics, counting the source pixels it read
+	 */
+	private static void recordResize(long start, int regionWidth, int regionHeight) {
+		PipelineMetrics.stageOf(PipelineMetrics.RESIZE).record(System.nanoTime() - start,
+				0, 0, (long) regionWidth * regionHeight);
+	}
+
+	/**
+	 * Source region and output size for a fit mode, as {x0, y0, regionWidth, regionHeight, outWidth, outHeight};
+	 * FILL crops the centre of the source to the target aspect ratio
+	 */
+	private static int[] getSourceRegion(int width, int height, int targetWidth, int targetHeight, FitMode fitMode) {
+		int x0 = 0, y0 = 0, regionWidth = width, regionHeight = height;
+		int[] outSize = getOutputSize(width, height, targetWidth, targetHeight, fitMode);
+		if (fitMode == FitMode.FILL) {
+			double scale = Math.max((double) targetWidth / width, (double) targetHeight / height);
+			regionWidth = Math.max(1, Math.min(width, (int) Math.round(targetWidth / scale)));
+			regionHeight = Math.max(1, Math.min(height, (int) Math.round(targetHeight / scale)));
+			x0 = (width - regionWidth) / 2;
+			y0 = (height - regionHeight) / 2;
+		}
+		return new int[]{x0, y0, regionWidth, regionHeight, outSize[0], outSize[1]};
+	}
+
+	/**
+	 * Size of the image resize() produces for a source and target box, as {width, height}
+	 */
+	public static int[] getOutputSize(int width, int height, int targetWidth, int targetHeight, FitMode fitMode) {
+		if (fitMode == FitMode.FIT) {
+			double scale = Math.min((double) targetWidth / width, (double) targetHeight / height);
+			return new int[]{Math.max(1, (int) Math.round(width * scale)), Math.max(1, (int) Math.round(height * scale))};
+		}
+		return new int[]{targetWidth, targetHeight};
+	}
+
+	/**
+	 * Horizontal pass: unpack region rows [rowStart, rowEnd) into channel planes and filter them
+	 * down to the output width
+	 */
+	private static void resampleRows(PixelRows src, int x0, int y0, int width, int rowStart, int rowEnd,
+	                                 WeightTable table, float[][] planes) {
+		int channels = planes.length;
+		try (BufferPool.Lease<int[]> rowLease = BufferPool.get().leaseInts(width);
+		     BufferPool.Lease<float[][]> unpackedLease = BufferPool.get().leaseFloatRows(channels, width)) {
+			int[] row = rowLease.get();
+			float[][] unpacked = unpackedLease.get();
+
+			for (int y = rowStart; y < rowEnd; y++) {
+				src.readRow(x0, y0 + y, width, row, 0);
+				unpack(row, width, unpacked);
+				for (int c = 0; c < channels; c++) {
+					filterRow(unpacked[c], table, planes[c], y * table.length);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Horizontal pass into off-heap planes: each filtered row is built in heap scratch and
+	 * copied to its place in channel plane c, which starts c * planeBytes into the segment
+	 */
+	private static void resampleRows(PixelRows src, int x0, int y0, int width, int rowStart, int rowEnd,
+	                                 WeightTable table, MemorySegment planes, long planeBytes, int channels) {
+		try (BufferPool.Lease<int[]> rowLease = BufferPool.get().leaseInts(width);
+		     BufferPool.Lease<float[][]> unpackedLease = BufferPool.get().leaseFloatRows(channels, width);
+		     BufferPool.Lease<float[]> filteredLease = BufferPool.get().leaseFloats(table.length)) {
+			int[] row = rowLease.get();
+			float[][] unpacked = unpackedLease.get();
+			float[] filtered = filteredLease.get();
+
+			for (int y = rowStart; y < rowEnd; y++) {
+				src.readRow(x0, y0 + y, width, row, 0);
+				unpack(row, width, unpacked);
+				for (int c = 0; c < channels; c++) {
+					filterRow(unpacked[c], table, filtered, 0);
+					MemorySegment.copy(filtered, 0, planes, ValueLayout.JAVA_FLOAT,
+							c * planeBytes + (long) y * table.length * Float.BYTES, table.length);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Vertical pass: filter the planes down to output rows [rowStart, rowEnd) and pack them
+	 */
+	private static void resampleColumns(float[][] planes, int width, int rowStart, int rowEnd,
+	                                    WeightTable table, PixelRows dst) {
+		int channels = planes.length;
+		try (BufferPool.Lease<float[][]> columnLease = BufferPool.get().leaseFloatRows(channels, width);
+		     BufferPool.Lease<int[]> rowLease = BufferPool.get().leaseInts(width)) {
+			float[][] columns = columnLease.get();
+			int[] row = rowLease.get();
+
+			for (int y = rowStart; y < rowEnd; y++) {
+				for (int c = 0; c < channels; c++) {
+					filterColumn(planes[c], width, table, y, columns[c]);
+				}
+				pack(columns, width, row);
+				dst.writeRow(0, y, width, row, 0);
+			}
+		}
+	}
+
+	/**
+	 * Vertical pass over off-heap planes
+	 */
+	private static void resampleColumns(MemorySegment planes, long planeBytes, int channels, int width,
+	                                    int rowStart, int rowEnd, WeightTable table, PixelRows dst) {
+		try (BufferPool.Lease<float[][]> columnLease = BufferPool.get().leaseFloatRows(channels, width);
+		     BufferPool.Lease<int[]> rowLease = BufferPool.get().leaseInts(width)) {
+			float[][] columns = columnLease.get();
+			int[] row = rowLease.get();
+
+			for (int y = rowStart; y < rowEnd; y++) {
+				for (int c = 0; c < channels; c++) {
+					filterColumn(planes, c * planeBytes, width, table, y, columns[c]);
+				}
+				pack(columns, width, row);
+				dst.writeRow(0, y, width, row, 0);
+			}
+		}
+	}
+
+	/**
+	 * out[offset + i] = sum over taps of src[index] * weight, gathering source samples per lane
+	 */
+	private static void filterRow(float[] src, WeightTable table, float[] out, int offset) {
+		int length = table.length;
+		int i = 0;
+
+		for (; i < FLOAT_SPECIES.loopBound(length); i += FLOAT_SPECIES.length()) {
+			FloatVector acc = FloatVector.zero(FLOAT_SPECIES);
+			for (int k = 0; k < table.taps; k++) {
+				int t = k * length + i;
+				FloatVector samples = FloatVector.fromArray(FLOAT_SPECIES, src, 0, table.index, t);
+				acc = samples.fma(FloatVector.fromArray(FLOAT_SPECIES, table.weight, t), acc);
+			}
+			acc.intoArray(out, offset + i);
+		}
+
+		for (; i < length; i++) {
+			float acc = 0f;
+			for (int k = 0; k < table.taps; k++) {
+				int t = k * length + i;
+				acc = Math.fma(src[table.index[t]], table.weight[t], acc);
+			}
+			out[offset + i] = acc;
+		}
+	}
+
+	/**
+	 * Output row y of one plane: a weighted sum of whole plane rows, contiguous across x
+	 */
+	private static void filterColumn(float[] plane, int width, WeightTable table, int y, float[] out) {
+		int length = table.length;
+		int x = 0;
+
+		for (; x < FLOAT_SPECIES.loopBound(width); x += FLOAT_SPECIES.length()) {
+			FloatVector acc = FloatVector.zero(FLOAT_SPECIES);
+			for (int k = 0; k < table.taps; k++) {
+				int t = k * length + y;
+				FloatVector samples = FloatVector.fromArray(FLOAT_SPECIES, plane, table.index[t] * width + x);
+				acc = samples.fma(FloatVector.broadcast(FLOAT_SPECIES, table.weight[t]), acc);
+			}
+			acc.intoArray(out, x);
+		}
+
+		for (; x < width; x++) {
+			float acc = 0f;
+			for (int k = 0; k < table.taps; k++) {
+				int t = k * length + y;
+				acc = Math.fma(plane[table.index[t] * width + x], table.weight[t], acc);
+			}
+			out[x] = acc;
+		}
+	}
+
+	/**
+	 * filterColumn over one off-heap plane starting planeOffset bytes into the segment
+	 */
+	private static void filterColumn(MemorySegment planes, long planeOffset, int width, WeightTable table,
+	                                 int y, float[] out) {
+		int length = table.length;
+		ByteOrder order = ByteOrder.nativeOrder();
+		int x = 0;
+
+		for (; x < FLOAT_SPECIES.loopBound(width); x += FLOAT_SPECIES.length()) {
+			FloatVector acc = FloatVector.zero(FLOAT_SPECIES);
+			for (int k = 0; k < table.taps; k++) {
+				int t = k * length + y;
+				long offset = planeOffset + ((long) table.index[t] * width + x) * Float.BYTES;
+				FloatVector samples = FloatVector.fromMemorySegment(FLOAT_SPECIES, planes, offset, order);
+				acc = samples.fma(FloatVector.broadcast(FLOAT_SPECIES, table.weight[t]), acc);
+			}
+			acc.intoArray(out, x);
+		}
+
+		for (; x < width; x++) {
+			float acc = 0f;
+			for (int k = 0; k < table.taps; k++) {
+				int t = k * length + y;
+				long offset = planeOffset + ((long) table.index[t] * width + x) * Float.BYTES;
+				acc = Math.fma(planes.get(ValueLayout.JAVA_FLOAT, offset), table.weight[t], acc);
+			}
+			out[x] = acc;
+		}
+	}
+
+	/**
+	 * Split packed pixels into float planes (r, g, b[, a]); color is premultiplied when alpha is present
+	 */
+	private static void unpack(int[] row, int width, float[][] planes) {
+		boolean alpha = planes.length == 4;
+		int x = 0;
+
+		if (INT_SPECIES.length() == FLOAT_SPECIES.length()) {
+			for (; x < INT_SPECIES.loopBound(width); x += INT_SPECIES.length()) {
+				IntVector pixels = IntVector.fromArray(INT_SPECIES, row, x);
+				FloatVector r = toFloat(pixels.lanewise(VectorOperators.LSHR, VectorUtils.RED_SHIFT).and(0xFF));
+				FloatVector g = toFloat(pixels.lanewise(VectorOperators.LSHR, VectorUtils.GREEN_SHIFT).and(0xFF));
+				FloatVector b = toFloat(pixels.and(0xFF));
+				if (alpha) {
+					FloatVector a = toFloat(pixels.lanewise(VectorOperators.LSHR, VectorUtils.ALPHA_SHIFT));
+					FloatVector coverage = a.mul(1f / 255f);
+					r = r.mul(coverage);
+					g = g.mul(coverage);
+					b = b.mul(coverage);
+					a.intoArray(planes[3], x);
+				}
+				r.intoArray(planes[0], x);
+				g.intoArray(planes[1], x);
+				b.intoArray(planes[2], x);
+			}
+		}
+
+		for (; x < width; x++) {
+			int pixel = row[x];
+			float coverage = alpha ? (pixel >>> 24) * (1f / 255f) : 1f;
+			planes[0][x] = ((pixel >> 16) & 0xFF) * coverage;
+			planes[1][x] = ((pixel >> 8) & 0xFF) * coverage;
+			planes[2][x] = (pixel & 0xFF) * coverage;
+			if (alpha) {
+				planes[3][x] = pixel >>> 24;
+			}
+		}
+	}
+
+	/**
+	 * Round, clamp and pack float planes back into ARGB pixels, undoing the premultiplication
+	 */
+	private static void pack(float[][] planes, int width, int[] row) {
+		boolean alpha = planes.length == 4;
+		int x = 0;
+
+		if (INT_SPECIES.length() == FLOAT_SPECIES.length()) {
+			for (; x < FLOAT_SPECIES.loopBound(width); x += FLOAT_SPECIES.length()) {
+				FloatVector r = FloatVector.fromArray(FLOAT_SPECIES, planes[0], x);
+				FloatVector g = FloatVector.fromArray(FLOAT_SPECIES, planes[1], x);
+				FloatVector b = FloatVector.fromArray(FLOAT_SPECIES, planes[2], x);
+				IntVector packed;
+				if (alpha) {
+					FloatVector a = FloatVector.fromArray(FLOAT_SPECIES, planes[3], x);
+					VectorMask<Float> visible = a.compare(VectorOperators.GT, 0f);
+					FloatVector unscale = FloatVector.broadcast(FLOAT_SPECIES, 255f).div(a)
+							.blend(0f, visible.not());
+					r = r.mul(unscale);
+					g = g.mul(unscale);
+					b = b.mul(unscale);
+					packed = toByte(a).lanewise(VectorOperators.LSHL, VectorUtils.ALPHA_SHIFT);
+				} else {
+					packed = IntVector.broadcast(INT_SPECIES, VectorUtils.ALPHA_MASK);
+				}
+				packed.or(toByte(r).lanewise(VectorOperators.LSHL, VectorUtils.RED_SHIFT))
+						.or(toByte(g).lanewise(VectorOperators.LSHL, VectorUtils.GREEN_SHIFT))
+						.or(toByte(b))
+						.intoArray(row, x);
+			}
+		}
+
+		for (; x < width; x++) {
+			float r = planes[0][x], g = planes[1][x], b = planes[2][x];
+			int a = 0xFF;
+			if (alpha) {
+				float coverage = planes[3][x];
+				float unscale = coverage > 0f ? 255f / coverage : 0f;
+				r *= unscale;
+				g *= unscale;
+				b *= unscale;
+				a = toByte(coverage);
+			}
+			row[x] = (a << 24) | (toByte(r) << 16) | (toByte(g) << 8) | toByte(b);
+		}
+	}
+
+	private static FloatVector toFloat(IntVector values) {
+		return (FloatVector) values.convertShape(VectorOperators.I2F, FLOAT_SPECIES, 0);
+	}
+
+	private static IntVector toByte(FloatVector values) {
+		FloatVector rounded = values.max(0f).min(255f).add(0.5f);
+		return (IntVector) rounded.convertShape(VectorOperators.F2I, INT_SPECIES, 0);
+	}
+
+	private static int toByte(float value) {
+		return (int) (Math.min(255f, Math.max(0f, value)) + 0.5f);
+	}
+
+	private static WeightTable getTable(ResampleFilter filter, int srcLength, int dstLength) {
+		String key = filter + ":" + srcLength + ":" + dstLength;
+		WeightTable table = TABLES.get(key);
+		if (table == null) {
+			if (TABLES.size() >= MAX_CACHED_TABLES) {
+				TABLES.clear();
+			}
+			table = computeTable(filter, srcLength, dstLength);
+			TABLES.putIfAbsent(key, table);
+		}
+		return table;
+	}
+
+	/**
+	 * Build normalized weights; taps falling outside the source are clamped to the edge pixel
+	 */
+	private static WeightTable computeTable(ResampleFilter filter, int srcLength, int dstLength) {
+		double scale = (double) srcLength / dstLength;
+		// On reductions the kernel is stretched to cover every source pixel that maps to an output sample
+		double filterScale = Math.max(1.0, scale);
+		double support = filter.getRadius() * filterScale;
+		int taps = (int) Math.ceil(support) * 2 + 1;
+
+		int[] index = new int[taps * dstLength];
+		float[] weight = new float[taps * dstLength];
+		double[] raw = new double[taps];
+
+		for (int i = 0; i < dstLength; i++) {
+			double center = (i + 0.5) * scale;
+			int first = (int) Math.floor(center - support);
+			double sum = 0;
+
+			for (int k = 0; k < taps; k++) {
+				raw[k] = kernel(filter, (first + k + 0.5 - center) / filterScale);
+				sum += raw[k];
+			}
+
+			for (int k = 0; k < taps; k++) {
+				int t = k * dstLength + i;
+				index[t] = Math.min(Math.max(first + k, 0), srcLength - 1);
+				weight[t] = (float) (sum != 0 ? raw[k] / sum : 0);
+			}
+		}
+
+		return new WeightTable(taps, dstLength, index, weight);
+	}
+
+	private static double kernel(ResampleFilter filter, double x) {
+		x = Math.abs(x);
+		switch (filter) {
+			case BILINEAR:
+				return x < 1 ? 1 - x : 0;
+			case BICUBIC:
+				// Catmull-Rom (a = -0.5)
+				if (x < 1) {
+					return (1.5 * x - 2.5) * x * x + 1;
+				}
+				if (x < 2) {
+					return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+				}
+				return 0;
+			case LANCZOS3:
+				return x < 3 ? sinc(x) * sinc(x / 3) : 0;
+			default:
+				throw new IllegalArgumentException("Unknown resample filter: " + filter);
+		}
+	}
+
+	private static double sinc(double x) {
+		if (x == 0) {
+			return 1;
+		}
+		double px = Math.PI * x;
+		return Math.sin(px) / px;
+	}
+}
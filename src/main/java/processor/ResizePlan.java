@@ -0,0 +1,130 @@
+package processor;
+
+import config.ProcessingConfig;
+import model.FilterType;
+import util.ImageUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decides which filters run before the resize and which after it, using a per-pixel cost model.
+ * Filters keep their relative order; only the split point moves. Point filters map each pixel
+ * on its own, so at the target resolution they give equivalent output, and on a downscale they
+ * move behind the resize. Stencils (BLUR, SHARPEN) stay at source resolution: their 3x3 kernel
+ * would cover a larger part of the picture after a reduction, which changes the result.
+ */
+public class ResizePlan {
+
+	private static final Logger LOGGER = Logger.getLogger(ResizePlan.class.getName());
+
+	// Plan shapes (stage order, reduce or enlarge) already reported at INFO; other images with the
+	// same shape go to FINE. Keyed without pixel sizes so mixed-size inputs cannot grow it.
+	private static final Set<String> REPORTED = ConcurrentHashMap.newKeySet();
+
+	private final List<FilterType> beforeResize;
+	private final List<FilterType> afterResize;
+	private final double estimatedCost;
+	private final double baselineCost;
+
+	private ResizePlan(List<FilterType> beforeResize, List<FilterType> afterResize,
+	                   double estimatedCost, double baselineCost) {
+		this.beforeResize = Collections.unmodifiableList(beforeResize);
+		this.afterResize = Collections.unmodifiableList(afterResize);
+		this.estimatedCost = estimatedCost;
+		this.baselineCost = baselineCost;
+	}
+
+	/**
+	 * Pick the cheapest valid split of the configured filters for a source of the given size
+	 */
+	public static ResizePlan compile(List<FilterType> filters, int width, int height, ProcessingConfig config) {
+		int[] outSize = Resampler.getOutputSize(width, height,
+				config.getTargetWidth(), config.getTargetHeight(), config.getFitMode());
+		double sourcePixels = (double) width * height;
+		double targetPixels = (double) outSize[0] * outSize[1];
+
+		// Every stencil has to stay in the prefix that runs at source resolution
+		int lastFixed = -1;
+		for (int i = 0; i < filters.size(); i++) {
+			if (!canRunAfterResize(filters.get(i))) {
+				lastFixed = i;
+			}
+		}
+
+		double baselineCost = cost(filters, 0, filters.size(), sourcePixels);
+		int bestSplit = filters.size();
+		double bestCost = baselineCost;
+		for (int split = lastFixed + 1; split <= filters.size(); split++) {
+			double candidate = cost(filters, 0, split, sourcePixels)
+					+ cost(filters, split, filters.size(), targetPixels);
+			if (candidate < bestCost) {
+				bestCost = candidate;
+				bestSplit = split;
+			}
+		}
+
+		List<FilterType> before = new ArrayList<>(filters.subList(0, bestSplit));
+		List<FilterType> after = new ArrayList<>(filters.subList(bestSplit, filters.size()));
+
+		ResizePlan plan = new ResizePlan(before, after, bestCost, baselineCost);
+		plan.report(width, height, outSize);
+		return plan;
+	}
+
+	private static boolean canRunAfterResize(FilterType filter) {
+		return filter.isPointFilter();
+	}
+
+	/**
+	 * Estimated pixel operations for filters [from, to) at a given resolution
+	 */
+	private static double cost(List<FilterType> filters, int from, int to, double pixels) {
+		double total = 0;
+		for (int i = from; i < to; i++) {
+			FilterType filter = filters.get(i);
+			int kernelSize = ImageUtils.getKernelSize(filter);
+			total += pixels * (filter.isPointFilter() ? 1 : kernelSize * kernelSize);
+		}
+		return total;
+	}
+
+	public List<FilterType> getBeforeResize() {
+		return beforeResize;
+	}
+
+	public List<FilterType> getAfterResize() {
+		return afterResize;
+	}
+
+	/**
+	 * Fraction of the source-order filter cost this plan saves, 0.0 - 1.0
+	 */
+	public double getEstimatedSavings() {
+		return baselineCost == 0 ? 0 : 1 - estimatedCost / baselineCost;
+	}
+
+	private void report(int width, int height, int[] outSize) {
+		boolean reduces = (long) outSize[0] * outSize[1] < (long) width * height;
+		Level level = REPORTED.add(this + (reduces ? " reduce" : " enlarge")) ? Level.INFO : Level.FINE;
+		if (!LOGGER.isLoggable(level)) {
+			return;
+		}
+		LOGGER.log(level, String.format("Plan %dx%d -> %dx%d: %s (estimated filter cost %.0f%% lower than filtering at source size)",
+				width, height, outSize[0], outSize[1], this, getEstimatedSavings() * 100));
+	}
+
+	@Override
+	public String toString() {
+		List<String> parts = new ArrayList<>();
+		beforeResize.forEach(f -> parts.add(f.name()));
+		parts.add("RESIZE");
+		afterResize.forEach(f -> parts.add(f.name()));
+		return String.join(" -> ", parts);
+	}
+}
@@ -0,0 +1,69 @@
+package task;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ForkJoin task that splits a row range into bands processed independently
+ */
+public class RowBandTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	private static final int MIN_BAND_ROWS = 32;
+	private static final int BANDS_PER_THREAD = 4;
+
+	/**
+	 * Work applied to one band of rows, [rowStart, rowEnd)
+	 */
+	@FunctionalInterface
+	public interface BandBody {
+		void process(int rowStart, int rowEnd);
+	}
+
+	// Tasks are never serialized; ForkJoinTask is Serializable only by inheritance
+	private final transient BandBody body;
+	private final int rowStart, rowEnd;
+	private final int bandRows;
+
+	public RowBandTask(BandBody body, int rowStart, int rowEnd, int bandRows) {
+		this.body = body;
+		this.rowStart = rowStart;
+		this.rowEnd = rowEnd;
+		this.bandRows = Math.max(1, bandRows);
+	}
+
+	@Override
+	protected void compute() {
+		if (rowEnd - rowStart <= bandRows) {
+			body.process(rowStart, rowEnd);
+			return;
+		}
+
+		int mid = rowStart + (rowEnd - rowStart) / 2;
+		RowBandTask top = new RowBandTask(body, rowStart, mid, bandRows);
+		RowBandTask bottom = new RowBandTask(body, mid, rowEnd, bandRows);
+
+		top.fork();
+		bottom.compute();
+		top.join();
+	}
+
+	/**
+	 * Process rows [0, rows) in bands on the given pool; when already running on one of its
+	 * workers the bands are forked from the current task instead of being resubmitted
+	 */
+	public static void run(ForkJoinPool pool, int rows, BandBody body) {
+		int bandRows = Math.max(MIN_BAND_ROWS, rows / Math.max(1, pool.getParallelism() * BANDS_PER_THREAD));
+
+		if (rows <= bandRows) {
+			body.process(0, rows);
+			return;
+		}
+
+		RowBandTask task = new RowBandTask(body, 0, rows, bandRows);
+		if (inForkJoinPool() && getPool() == pool) {
+			task.invoke();
+		} else {
+			pool.invoke(task);
+		}
+	}
+}
@@ -1,26 +1,41 @@
 package task;
 
-import model.FilterType;
-import util.ImageUtils;
+import metrics.ImageContext;
+import metrics.TileTaskEvent;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.util.concurrent.RecursiveTask;
+import java.nio.file.Path;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * ForkJoin task for tile-based processing
+ * ForkJoin task for tile-based processing.
+ * Tiles write straight into a shared, preallocated destination; the region body reads
+ * whatever halo it needs from the source, so tiling never changes the output pixels.
  */
-public class TileProcessingTask extends RecursiveTask<BufferedImage> {
+public class TileProcessingTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
 	private static final int TILE_SIZE = 256;
 
-	private final BufferedImage image;
-	private final FilterType filter;
+	/**
+	 * Work applied to one tile, given as its top-left corner and size
+	 */
+	@FunctionalInterface
+	public interface TileBody {
+		void process(int x, int y, int width, int height);
+	}
+
+	// Tasks are never serialized; ForkJoinTask is Serializable only by inheritance
+	private final transient TileBody body;
 	private final int x, y, width, height;
+	// Image being tiled, taken from the submitting thread; the tiles run on pool workers
+	private final transient Path imagePath;
+
+	public TileProcessingTask(TileBody body, int x, int y, int width, int height) {
+		this(body, x, y, width, height, ImageContext.current());
+	}
 
-	public TileProcessingTask(BufferedImage image, FilterType filter,
-	                          int x, int y, int width, int height) {
-		this.image = image;
-		this.filter = filter;
+	private TileProcessingTask(TileBody body, int x, int y, int width, int height, Path imagePath) {
+		this.body = body;
+		this.imagePath = imagePath;
 		this.x = x;
 		this.y = y;
 		this.width = width;
@@ -28,56 +43,33 @@ public class TileProcessingTask extends RecursiveTask<BufferedImage> {
 	}
 
 	@Override
-	protected BufferedImage compute() {
+	protected void compute() {
 		if (width <= TILE_SIZE || height <= TILE_SIZE) {
 			// Base case: process tile directly
-			return processTile(image, filter, x, y, width, height);
+			TileTaskEvent event = TileTaskEvent.start();
+			body.process(x, y, width, height);
+			event.finish(imagePath, x, y, width, height);
+			return;
 		}
 
 		// Divide into quadrants
 		int midX = width / 2;
 		int midY = height / 2;
 
-		TileProcessingTask topLeft = new TileProcessingTask(image, filter, x, y, midX, midY);
-		TileProcessingTask topRight = new TileProcessingTask(image, filter, x + midX, y, width - midX, midY);
-		TileProcessingTask bottomLeft = new TileProcessingTask(image, filter, x, y + midY, midX, height - midY);
-		TileProcessingTask bottomRight = new TileProcessingTask(image, filter, x + midX, y + midY, width - midX, height - midY);
+		TileProcessingTask topLeft = new TileProcessingTask(body, x, y, midX, midY, imagePath);
+		TileProcessingTask topRight = new TileProcessingTask(body, x + midX, y, width - midX, midY, imagePath);
+		TileProcessingTask bottomLeft = new TileProcessingTask(body, x, y + midY, midX, height - midY, imagePath);
+		TileProcessingTask bottomRight = new TileProcessingTask(body, x + midX, y + midY, width - midX, height - midY, imagePath);
 
 		// Fork subtasks
 		topLeft.fork();
 		topRight.fork();
 		bottomLeft.fork();
 
-		// Compute one directly and join others
-		BufferedImage brResult = bottomRight.compute();
-		BufferedImage blResult = bottomLeft.join();
-		BufferedImage trResult = topRight.join();
-		BufferedImage tlResult = topLeft.join();
-
-		// Combine results
-		return combineResults(tlResult, trResult, blResult, brResult);
-	}
-
-	private BufferedImage processTile(BufferedImage image, FilterType filter,
-	                                  int x, int y, int width, int height) {
-		BufferedImage tile = image.getSubimage(x, y, width, height);
-		return ImageUtils.applyFilter(tile, filter);
-	}
-
-	private BufferedImage combineResults(BufferedImage topLeft, BufferedImage topRight,
-	                                     BufferedImage bottomLeft, BufferedImage bottomRight) {
-		int totalWidth = topLeft.getWidth() + topRight.getWidth();
-		int totalHeight = topLeft.getHeight() + bottomLeft.getHeight();
-
-		BufferedImage combined = new BufferedImage(totalWidth, totalHeight, BufferedImage.TYPE_INT_RGB);
-		Graphics2D g = combined.createGraphics();
-
-		g.drawImage(topLeft, 0, 0, null);
-		g.drawImage(topRight, topLeft.getWidth(), 0, null);
-		g.drawImage(bottomLeft, 0, topLeft.getHeight(), null);
-		g.drawImage(bottomRight, topLeft.getWidth(), topLeft.getHeight(), null);
-
-		g.dispose();
-		return combined;
+		// Compute one directly and join others; tiles are disjoint so nothing needs combining
+		bottomRight.compute();
+		bottomLeft.join();
+		topRight.join();
+		topLeft.join();
 	}
-}
\ No newline at end of file
+}
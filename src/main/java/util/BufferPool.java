@@ -0,0 +1,287 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide pool of int[] and float[] pixel buffers in power-of-two size classes.
+ * Scratch rows, float planes and destination images are leased and returned, so a steady
+ * batch reuses the same arrays instead of allocating them per image, band or stage.
+ * Idle arrays are kept up to a byte cap; returns beyond it are left to the GC.
+ *
+ * Leased arrays are at least the requested length and hold stale data from earlier leases.
+ * The cap defaults to an eighth of the maximum heap; set imageprocessor.bufferpool.maxMB to override it.
+ */
+public final class BufferPool {
+
+	// Smallest class is 64 elements; anything shorter shares it
+	private static final int MIN_CLASS = 6;
+	private static final int CLASSES = 31;
+	private static final long DEFAULT_HEAP_DIVISOR = 8;
+
+	private static final ColorModel RGB_MODEL = new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF, 0);
+	private static final int[] RGB_MASKS = {0xFF0000, 0xFF00, 0xFF};
+	private static final int[] ARGB_MASKS = {0xFF0000, 0xFF00, 0xFF, 0xFF000000};
+
+	private static final BufferPool INSTANCE = new BufferPool(configuredLimit());
+
+	/**
+	 * One checked-out buffer; closing it returns the buffer to the pool. Closing more than
+	 * once has no effect, and the buffer must not be used after the first close.
+	 */
+	public static final class Lease<A> implements AutoCloseable {
+		private final BufferPool pool;
+		private final A buffer;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Lease(BufferPool pool, A buffer) {
+			this.pool = pool;
+			this.buffer = buffer;
+		}
+
+		public A get() {
+			return buffer;
+		}
+
+		@Override
+		public void close() {
+			if (released.compareAndSet(false, true)) {
+				pool.giveBack(buffer);
+			}
+		}
+	}
+
+	private final long maxRetainedBytes;
+	private final ConcurrentLinkedDeque<int[]>[] intShelves = newShelves();
+	private final ConcurrentLinkedDeque<float[]>[] floatShelves = newShelves();
+	private final AtomicLong retainedBytes = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	private BufferPool(long maxRetainedBytes) {
+		this.maxRetainedBytes = maxRetainedBytes;
+	}
+
+	public static BufferPool get() {
+		return INSTANCE;
+	}
+
+	private static long configuredLimit() {
+		long configuredMb = Long.getLong("imageprocessor.bufferpool.maxMB", -1);
+		if (configuredMb >= 0) {
+			return configuredMb * 1024 * 1024;
+		}
+		return Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_DIVISOR;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"}) // generic arrays can only be created raw
+	private static <T> ConcurrentLinkedDeque<T>[] newShelves() {
+		ConcurrentLinkedDeque<T>[] shelves = new ConcurrentLinkedDeque[CLASSES];
+		for (int i = 0; i < CLASSES; i++) {
+			shelves[i] = new ConcurrentLinkedDeque<>();
+		}
+		return shelves;
+	}
+
+	/**
+	 * Length of the array a lease of minLength receives: the next power of two, at least 64
+	 */
+	public static int capacityFor(int minLength) {
+		int sizeClass = classFor(minLength);
+		return sizeClass < CLASSES ? 1 << sizeClass : minLength;
+	}
+
+	/**
+	 * Size class serving minLength; CLASSES when no class is large enough
+	 */
+	private static int classFor(int minLength) {
+		if (minLength <= 1 << MIN_CLASS) {
+			return MIN_CLASS;
+		}
+		return 32 - Integer.numberOfLeadingZeros(minLength - 1);
+	}
+
+	/**
+	 * Lease an int[] of at least minLength elements
+	 */
+	public Lease<int[]> leaseInts(int minLength) {
+		return new Lease<>(this, takeInts(minLength));
+	}
+
+	/**
+	 * Lease a float[] of at least minLength elements
+	 */
+	public Lease<float[]> leaseFloats(int minLength) {
+		return new Lease<>(this, takeFloats(minLength));
+	}
+
+	/**
+	 * Lease rows int[][rows] of at least length elements each, returned together
+	 */
+	public Lease<int[][]> leaseIntRows(int rows, int length) {
+		int[][] buffers = new int[rows][];
+		for (int i = 0; i < rows; i++) {
+			buffers[i] = takeInts(length);
+		}
+		return new Lease<>(this, buffers);
+	}
+
+	/**
+	 * Lease rows float[][rows] of at least length elements each, returned together
+	 */
+	public Lease<float[][]> leaseFloatRows(int rows, int length) {
+		float[][] buffers = new float[rows][];
+		for (int i = 0; i < rows; i++) {
+			buffers[i] = takeFloats(length);
+		}
+		return new Lease<>(this, buffers);
+	}
+
+	/**
+	 * TYPE_INT_ARGB or TYPE_INT_RGB image over a pooled int[]. The pixels are stale, so the
+	 * caller must write every pixel before reading any. Hand it back with recycle once it
+	 * has been encoded.
+	 */
+	public BufferedImage createImage(int width, int height, boolean alpha) {
+		int pixels = Math.multiplyExact(width, height);
+		DataBufferInt buffer = new DataBufferInt(takeInts(pixels), pixels);
+		WritableRaster raster = Raster.createPackedRaster(buffer, width, height, width,
+				alpha ? ARGB_MASKS : RGB_MASKS, null);
+		return new BufferedImage(alpha ? ColorModel.getRGBdefault() : RGB_MODEL, raster, false, null);
+	}
+
+	/**
+	 * Return the pixel array of an image nothing will read again. Images that are not backed
+	 * by a single whole int[] (other types, subimages) are ignored; returns whether it was taken.
+	 */
+	public boolean recycle(BufferedImage image) {
+		if (image == null) {
+			return false;
+		}
+		WritableRaster raster = image.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		if (raster.getParent() != null || !(buffer instanceof DataBufferInt) || buffer.getNumBanks() != 1) {
+			return false;
+		}
+		giveBack(((DataBufferInt) buffer).getData());
+		return true;
+	}
+
+	private int[] takeInts(int minLength) {
+		int sizeClass = classFor(minLength);
+		int[] buffer = sizeClass < CLASSES ? intShelves[sizeClass].pollFirst() : null;
+		if (buffer != null) {
+			retainedBytes.addAndGet(-(long) buffer.length * Integer.BYTES);
+			hits.incrementAndGet();
+			return buffer;
+		}
+		misses.incrementAndGet();
+		return new int[allocationLength(minLength, sizeClass, Integer.BYTES)];
+	}
+
+	private float[] takeFloats(int minLength) {
+		int sizeClass = classFor(minLength);
+		float[] buffer = sizeClass < CLASSES ? floatShelves[sizeClass].pollFirst() : null;
+		if (buffer != null) {
+			retainedBytes.addAndGet(-(long) buffer.length * Float.BYTES);
+			hits.incrementAndGet();
+			return buffer;
+		}
+		misses.incrementAndGet();
+		return new float[allocationLength(minLength, sizeClass, Float.BYTES)];
+	}
+
+	/**
+	 * Full class size, unless the class could never be retained: then the exact length, so
+	 * a one-off giant buffer does not pay for the rounding
+	 */
+	private int allocationLength(int minLength, int sizeClass, int elementBytes) {
+		if (sizeClass >= CLASSES || ((long) elementBytes << sizeClass) > maxRetainedBytes) {
+			return minLength;
+		}
+		return 1 << sizeClass;
+	}
+
+	private void giveBack(Object buffer) {
+		if (buffer instanceof int[]) {
+			int[] array = (int[]) buffer;
+			if (reserve(array.length, Integer.BYTES)) {
+				intShelves[shelfFor(array.length)].offerFirst(array);
+			}
+		} else if (buffer instanceof float[]) {
+			float[] array = (float[]) buffer;
+			if (reserve(array.length, Float.BYTES)) {
+				floatShelves[shelfFor(array.length)].offerFirst(array);
+			}
+		} else if (buffer instanceof Object[]) {
+			for (Object row : (Object[]) buffer) {
+				giveBack(row);
+			}
+		}
+	}
+
+	/**
+	 * Class an array can serve: the largest power of two not above its length, so arrays
+	 * of any length can come back without shortchanging a later lease
+	 */
+	private static int shelfFor(int length) {
+		return 31 - Integer.numberOfLeadingZeros(length);
+	}
+
+	private boolean reserve(int length, int elementBytes) {
+		if (length < 1 << MIN_CLASS) {
+			return false;
+		}
+		long bytes = (long) length * elementBytes;
+		if (retainedBytes.addAndGet(bytes) > maxRetainedBytes) {
+			retainedBytes.addAndGet(-bytes);
+			dropped.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	public long getMaxRetainedBytes() {
+		return maxRetainedBytes;
+	}
+
+	/**
+	 * Bytes held by idle arrays waiting for a lease
+	 */
+	public long getRetainedBytes() {
+		return retainedBytes.get();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returned arrays left to the GC because the pool was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public String toString() {
+		long hitCount = hits.get();
+		long total = hitCount + misses.get();
+		return String.format("Buffer pool: %d/%d leases reused (%.1f%%), %d MB retained of %d MB, %d dropped",
+				hitCount, total, total == 0 ? 0.0 : 100.0 * hitCount / total,
+				getRetainedBytes() / 1024 / 1024, maxRetainedBytes / 1024 / 1024, dropped.get());
+	}
+}
@@ -0,0 +1,173 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Streaming image discovery: walks directories in parallel and hands each accepted file
+ * to consumers as soon as it is found, applying the size and extension checks on the way
+ */
+public class ImageDiscovery implements ImageSource, AutoCloseable {
+
+	private static final Logger LOGGER = Logger.getLogger(ImageDiscovery.class.getName());
+
+	// Marks the end of the walk; never handed out to callers
+	private static final Path END = Paths.get("");
+	private static final int QUEUE_CAPACITY = 10_000;
+	private static final int DEFAULT_WALKERS = 4;
+
+	private final BlockingQueue<Path> found = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+	private final AtomicInteger pendingDirectories = new AtomicInteger();
+	private final AtomicInteger discovered = new AtomicInteger();
+	private volatile boolean complete;
+	private final Set<String> supportedFormats = new HashSet<>(Arrays.asList(ImageUtils.getSupportedFormats()));
+	private final long maxFileSize;
+	private final ExecutorService walkers;
+
+	private ImageDiscovery(long maxFileSize, int walkerThreads) {
+		this.maxFileSize = maxFileSize;
+		AtomicInteger threadIndex = new AtomicInteger();
+		this.walkers = Executors.newFixedThreadPool(Math.max(1, walkerThreads), runnable -> {
+			Thread thread = new Thread(runnable, "discovery-" + threadIndex.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Start walking a directory tree in the background
+	 */
+	public static ImageDiscovery start(Path root, long maxFileSize) {
+		return start(root, maxFileSize, DEFAULT_WALKERS);
+	}
+
+	public static ImageDiscovery start(Path root, long maxFileSize, int walkerThreads) {
+		ImageDiscovery discovery = new ImageDiscovery(maxFileSize, walkerThreads);
+		if (!Files.isDirectory(root)) {
+			LOGGER.warning("Input directory does not exist: " + root);
+			discovery.finish();
+		} else {
+			discovery.submitDirectory(root);
+		}
+		return discovery;
+	}
+
+	@Override
+	public Path next() throws InterruptedException {
+		Path path = found.take();
+		if (path == END) {
+			// Leave the marker for the other consumers
+			found.put(END);
+			return null;
+		}
+		return path;
+	}
+
+	/**
+	 * Number of files accepted so far
+	 */
+	public int getDiscoveredCount() {
+		return discovered.get();
+	}
+
+	@Override
+	public int getKnownCount() {
+		return discovered.get();
+	}
+
+	/**
+	 * True once every directory has been walked
+	 */
+	@Override
+	public boolean isCountFinal() {
+		return complete;
+	}
+
+	@Override
+	public void close() {
+		walkers.shutdownNow();
+	}
+
+	private void submitDirectory(Path directory) {
+		pendingDirectories.incrementAndGet();
+		walkers.execute(() -> {
+			try {
+				scanDirectory(directory);
+			} finally {
+				if (pendingDirectories.decrementAndGet() == 0) {
+					finish();
+				}
+			}
+		});
+	}
+
+	private void scanDirectory(Path directory) {
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+			for (Path entry : entries) {
+				BasicFileAttributes attrs;
+				try {
+					attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				} catch (IOException e) {
+					LOGGER.warning("Could not access file: " + entry + " - " + e.getMessage());
+					continue;
+				}
+
+				if (attrs.isDirectory()) {
+					submitDirectory(entry);
+					continue;
+				}
+				if (attrs.isSymbolicLink()) {
+					// Symlinked files are read through the link, as the old file-tree walk did;
+					// symlinked directories are not descended into, which also rules out cycles
+					try {
+						attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+					} catch (IOException e) {
+						LOGGER.warning("Could not follow link: " + entry + " - " + e.getMessage());
+						continue;
+					}
+				}
+				if (attrs.isRegularFile() && accept(entry, attrs)) {
+					discovered.incrementAndGet();
+					found.put(entry);
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.warning("Could not scan directory: " + directory + " - " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean accept(Path file, BasicFileAttributes attrs) {
+		// Security: Check file size to prevent processing huge files
+		if (attrs.size() > maxFileSize) {
+			LOGGER.warning("Skipping large file: " + file + " (size: " + attrs.size() + " bytes)");
+			return false;
+		}
+		return supportedFormats.contains(ImageUtils.getFileExtension(file).toLowerCase());
+	}
+
+	private void finish() {
+		complete = true;
+		try {
+			found.put(END);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		walkers.shutdown();
+	}
+}
@@ -0,0 +1,133 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Image encoding with one cached ImageWriter and ImageWriteParam per thread and format.
+ * Writers are not thread-safe, so each encoding thread keeps its own and reuses it for
+ * every image instead of looking one up per call.
+ */
+public final class ImageEncoder {
+
+	static {
+		// Encode straight into the caller's stream instead of staging through a temp file
+		ImageIO.setUseCache(false);
+	}
+
+	/**
+	 * Writer and its write parameters for one format, owned by a single thread
+	 */
+	private static final class WriterSlot {
+		private final ImageWriter writer;
+		private final ImageWriteParam param;
+		private final boolean alphaSupported;
+
+		private WriterSlot(ImageWriter writer, boolean alphaSupported) {
+			this.writer = writer;
+			this.param = writer.getDefaultWriteParam();
+			this.alphaSupported = alphaSupported;
+		}
+	}
+
+	private static final ThreadLocal<Map<String, WriterSlot>> WRITERS = ThreadLocal.withInitial(HashMap::new);
+
+	private ImageEncoder() {
+	}
+
+	/**
+	 * Encode an image in the given format, applying quality (0.0 - 1.0) to lossy encoders.
+	 * Lossless writers such as PNG keep their default level, where quality would only map
+	 * to a deflate setting and 1.0 would mean no compression at all.
+	 */
+	public static void encode(BufferedImage image, String format, float quality, OutputStream out) throws IOException {
+		String key = format.toLowerCase(Locale.ROOT);
+		WriterSlot slot = getSlot(key);
+		BufferedImage source = slot.alphaSupported ? image : dropAlpha(image);
+
+		ImageWriteParam param = slot.param;
+		if (param.canWriteCompressed()) {
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			String[] types = param.getCompressionTypes();
+			if (types != null && types.length > 0 && param.getCompressionType() == null) {
+				param.setCompressionType(types[0]);
+			}
+			if (param.isCompressionLossless()) {
+				param.setCompressionMode(ImageWriteParam.MODE_DEFAULT);
+			} else {
+				param.setCompressionQuality(Math.max(0f, Math.min(1f, quality)));
+			}
+		}
+
+		boolean disposed = false;
+		try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+			slot.writer.setOutput(stream);
+			slot.writer.write(null, new IIOImage(source, null, null), param);
+		} catch (IOException | RuntimeException e) {
+			// A writer that failed mid-image may hold partial state; start fresh next time.
+			// A disposed writer rejects every call, so reset its output first.
+			WRITERS.get().remove(key);
+			slot.writer.setOutput(null);
+			slot.writer.dispose();
+			disposed = true;
+			throw e;
+		} finally {
+			if (!disposed) {
+				slot.writer.setOutput(null);
+			}
+			if (source != image) {
+				BufferPool.get().recycle(source);
+			}
+		}
+	}
+
+	private static WriterSlot getSlot(String format) throws IOException {
+		Map<String, WriterSlot> writers = WRITERS.get();
+		WriterSlot slot = writers.get(format);
+		if (slot == null) {
+			Iterator<ImageWriter> candidates = ImageIO.getImageWritersByFormatName(format);
+			if (!candidates.hasNext()) {
+				throw new IOException("No image writer for format: " + format);
+			}
+			slot = new WriterSlot(candidates.next(), supportsAlpha(format));
+			writers.put(format, slot);
+		}
+		return slot;
+	}
+
+	private static boolean supportsAlpha(String format) {
+		return !format.equals("jpg") && !format.equals("jpeg") && !format.equals("bmp");
+	}
+
+	/**
+	 * Copy an image with alpha into an opaque pooled RGB image; the JPEG and BMP writers reject alpha
+	 */
+	private static BufferedImage dropAlpha(BufferedImage image) {
+		if (!image.getColorModel().hasAlpha()) {
+			return image;
+		}
+
+		int width = image.getWidth();
+		BufferedImage rgb = BufferPool.get().createImage(width, image.getHeight(), false);
+		PixelAccess src = PixelAccess.of(image);
+		PixelAccess dst = PixelAccess.of(rgb);
+		try (BufferPool.Lease<int[]> rowLease = BufferPool.get().leaseInts(width)) {
+			int[] row = rowLease.get();
+			for (int y = 0; y < image.getHeight(); y++) {
+				src.readRow(0, y, width, row, 0);
+				dst.writeRow(0, y, width, row, 0);
+			}
+		}
+		return rgb;
+	}
+}
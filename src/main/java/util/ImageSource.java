@@ -0,0 +1,54 @@
+package util;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe supply of input image paths for the processing pipelines
+ */
+public interface ImageSource {
+
+	/**
+	 * Next path to process, blocking until one is available; null once the source is exhausted
+	 */
+	Path next() throws InterruptedException;
+
+	/**
+	 * Number of inputs known so far, or -1 when the source cannot tell
+	 */
+	default int getKnownCount() {
+		return -1;
+	}
+
+	/**
+	 * Whether getKnownCount has stopped growing
+	 */
+	default boolean isCountFinal() {
+		return false;
+	}
+
+	/**
+	 * Source over a fixed list of paths
+	 */
+	static ImageSource of(List<Path> paths) {
+		AtomicInteger nextIndex = new AtomicInteger();
+		return new ImageSource() {
+			@Override
+			public Path next() {
+				int index = nextIndex.getAndIncrement();
+				return index < paths.size() ? paths.get(index) : null;
+			}
+
+			@Override
+			public int getKnownCount() {
+				return paths.size();
+			}
+
+			@Override
+			public boolean isCountFinal() {
+				return true;
+			}
+		};
+	}
+}
@@ -1,13 +1,26 @@
 package util;
 
+import metrics.ImageDecodeEvent;
+import metrics.ImageEncodeEvent;
+import metrics.PipelineMetrics;
 import model.FilterType;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * Utility class for image operations
@@ -16,6 +29,17 @@ public class ImageUtils {
 
 	private static final String[] SUPPORTED_FORMATS = {"jpg", "jpeg", "png", "bmp"};
 
+	// 3x3 convolution kernels shared by the scalar and vector paths
+	private static final float[] BLUR_KERNEL = {1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f};
+	private static final float[] SHARPEN_KERNEL = {0, -1, 0, -1, 5, -1, 0, -1, 0};
+	private static final int KERNEL_SIZE = 3;
+
+	// Point filter settings shared by the scalar and vector paths
+	public static final int BRIGHTNESS_OFFSET = 30;
+	public static final float CONTRAST_FACTOR = 1.2f;
+	private static final int CONTRAST_FIXED = (int) (CONTRAST_FACTOR * 256);
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
 	/**
 	 * Load an image from a file path
 	 */
@@ -23,16 +47,185 @@ public class ImageUtils {
 		return ImageIO.read(imagePath.toFile());
 	}
 
+	/**
+	 * Load an image for a known output size. When the source is at least twice the target in
+	 * both dimensions, the decoder skips pixels at an integer factor, so the result is never
+	 * smaller than the target and still needs a final resize. A target of 0 loads at full size.
+	 */
+	public static BufferedImage loadImage(Path imagePath, int targetWidth, int targetHeight) throws IOException {
+		ImageDecodeEvent event = ImageDecodeEvent.start();
+		long start = System.nanoTime();
+		BufferedImage image;
+		if (targetWidth <= 0 || targetHeight <= 0) {
+			image = loadImage(imagePath);
+		} else {
+			try (ImageInputStream stream = ImageIO.createImageInputStream(imagePath.toFile())) {
+				image = readSubsampled(stream, targetWidth, targetHeight);
+			}
+		}
+		long bytesRead = Files.size(imagePath);
+		recordDecode(start, bytesRead, image);
+		event.finish(imagePath, bytesRead, image);
+		return image;
+	}
+
 	/**
 	 * Save an image to a file path
 	 */
 	public static void saveImage(BufferedImage image, Path outputPath, float quality) throws IOException {
+		ImageEncodeEvent event = ImageEncodeEvent.start();
+		long start = System.nanoTime();
+		String format = getOutputFormat(outputPath);
+		// Replace rather than truncate: the old file may be a hard link into the result cache
+		Files.deleteIfExists(outputPath);
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputPath), WRITE_BUFFER_SIZE)) {
+			ImageEncoder.encode(image, format, quality, out);
+		}
+		long written = Files.size(outputPath);
+		PipelineMetrics.stageOf(PipelineMetrics.ENCODE).record(System.nanoTime() - start,
+				0, written, (long) image.getWidth() * image.getHeight());
+		event.finish(outputPath, format, image, written);
+	}
+
+	/**
+	 * Read the raw bytes of an image file without decoding them
+	 */
+	public static byte[] readImageBytes(Path imagePath) throws IOException {
+		long start = System.nanoTime();
+		byte[] data = Files.readAllBytes(imagePath);
+		PipelineMetrics.stageOf(PipelineMetrics.READ).record(System.nanoTime() - start, data.length, 0, 0);
+		return data;
+	}
+
+	/**
+	 * Decode an image from bytes already read into memory
+	 */
+	public static BufferedImage decodeImage(byte[] data) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(data));
+	}
+
+	/**
+	 * Decode an in-memory encoded image for a known output size, see loadImage(Path, int, int)
+	 */
+	public static BufferedImage decodeImage(byte[] data, int targetWidth, int targetHeight) throws IOException {
+		ImageDecodeEvent event = ImageDecodeEvent.start();
+		long start = System.nanoTime();
+		BufferedImage image;
+		if (targetWidth <= 0 || targetHeight <= 0) {
+			image = decodeImage(data);
+		} else {
+			try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+				image = readSubsampled(stream, targetWidth, targetHeight);
+			}
+		}
+		recordDecode(start, data.length, image);
+		event.finish(null, data.length, image);
+		return image;
+	}
+
+	private static void recordDecode(long start, long bytesRead, BufferedImage image) {
+		long pixels = image == null ? 0 : (long) image.getWidth() * image.getHeight();
+		PipelineMetrics.stageOf(PipelineMetrics.DECODE).record(System.nanoTime() - start, bytesRead, 0, pixels);
+	}
+
+	/**
+	 * Integer subsampling factor that keeps both dimensions at or above the target
+	 */
+	public static int getSubsamplingFactor(int width, int height, int targetWidth, int targetHeight) {
+		if (targetWidth <= 0 || targetHeight <= 0) {
+			return 1;
+		}
+		return Math.max(1, Math.min(width / targetWidth, height / targetHeight));
+	}
+
+	/**
+	 * Width and height from the image header without decoding pixels; null when unreadable
+	 */
+	public static int[] readDimensions(Path imagePath) {
+		try (ImageInputStream stream = ImageIO.createImageInputStream(imagePath.toFile())) {
+			if (stream == null) {
+				return null;
+			}
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext()) {
+				return null;
+			}
+
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(stream, true, true);
+				return new int[]{reader.getWidth(0), reader.getHeight(0)};
+			} finally {
+				reader.dispose();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Read the header first, then decode only every n-th pixel; null when no reader accepts the data
+	 */
+	private static BufferedImage readSubsampled(ImageInputStream stream, int targetWidth, int targetHeight) throws IOException {
+		if (stream == null) {
+			return null;
+		}
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+		if (!readers.hasNext()) {
+			return null;
+		}
+
+		ImageReader reader = readers.next();
+		try {
+			reader.setInput(stream, true, true);
+			int factor = getSubsamplingFactor(reader.getWidth(0), reader.getHeight(0), targetWidth, targetHeight);
+			ImageReadParam param = reader.getDefaultReadParam();
+			if (factor > 1) {
+				param.setSourceSubsampling(factor, factor, 0, 0);
+			}
+			return reader.read(0, param);
+		} finally {
+			reader.dispose();
+		}
+	}
+
+	/**
+	 * Encode an image in memory in the format implied by the output path
+	 */
+	public static byte[] encodeImage(BufferedImage image, Path outputPath, float quality) throws IOException {
+		// Compressed output is usually well under a byte per pixel
+		int estimate = (int) Math.min(Integer.MAX_VALUE - 8, (long) image.getWidth() * image.getHeight() / 2 + 1024);
+		ImageEncodeEvent event = ImageEncodeEvent.start();
+		long start = System.nanoTime();
+		String format = getOutputFormat(outputPath);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(estimate);
+		ImageEncoder.encode(image, format, quality, out);
+		byte[] encoded = out.toByteArray();
+		PipelineMetrics.stageOf(PipelineMetrics.ENCODE).record(System.nanoTime() - start,
+				0, encoded.length, (long) image.getWidth() * image.getHeight());
+		event.finish(outputPath, format, image, encoded.length);
+		return encoded;
+	}
+
+	/**
+	 * Write already encoded image bytes to a file path
+	 */
+	public static void writeImageBytes(byte[] data, Path outputPath) throws IOException {
+		long start = System.nanoTime();
+		Files.deleteIfExists(outputPath);
+		Files.write(outputPath, data);
+		PipelineMetrics.stageOf(PipelineMetrics.WRITE).record(System.nanoTime() - start, 0, data.length, 0);
+	}
+
+	/**
+	 * Output format for a path, falling back to jpg for unsupported extensions
+	 */
+	public static String getOutputFormat(Path outputPath) {
 		String format = getFileExtension(outputPath).toLowerCase();
 		if (!Arrays.asList(SUPPORTED_FORMATS).contains(format)) {
 			format = "jpg";
 		}
-
-		ImageIO.write(image, format, outputPath.toFile());
+		return format;
 	}
 
 	/**
@@ -41,115 +234,104 @@ public class ImageUtils {
 	public static BufferedImage applyFilter(BufferedImage image, FilterType filter) {
 		int width = image.getWidth();
 		int height = image.getHeight();
+
+		if (!filter.isPointFilter() && filter != FilterType.BLUR && filter != FilterType.SHARPEN) {
+			return deepCopy(image);
+		}
+
 		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		if (!filter.isPointFilter()) {
+			applyConvolution(image, result, getKernel(filter), KERNEL_SIZE);
+			return result;
+		}
 
-		switch (filter) {
-			case GRAYSCALE:
-				for (int y = 0; y < height; y++) {
-					for (int x = 0; x < width; x++) {
-						int rgb = image.getRGB(x, y);
-						int r = (rgb >> 16) & 0xFF;
-						int g = (rgb >> 8) & 0xFF;
-						int b = rgb & 0xFF;
-						int gray = (int)(0.299 * r + 0.587 * g + 0.114 * b);
-						int grayRgb = (gray << 16) | (gray << 8) | gray;
-						result.setRGB(x, y, grayRgb);
-					}
-				}
-				break;
+		// Rows go straight between the two rasters, no per-pixel color model lookups
+		PointLut lut = PointLut.compile(Collections.singletonList(filter));
+		PixelAccess src = PixelAccess.of(image);
+		PixelAccess dst = PixelAccess.of(result);
+		try (BufferPool.Lease<int[]> rowLease = BufferPool.get().leaseInts(width)) {
+			int[] row = rowLease.get();
+			for (int y = 0; y < height; y++) {
+				src.readRow(0, y, width, row, 0);
+				lut.apply(row, row, width);
+				dst.writeRow(0, y, width, row, 0);
+			}
+		}
 
-			case BLUR:
-				// Simple 3x3 blur kernel
-				float[] kernel = {1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f, 1/9f};
-				result = applyConvolution(image, kernel, 3);
-				break;
+		return result;
+	}
 
-			case SHARPEN:
-				// Sharpening kernel
-				float[] sharpenKernel = {0, -1, 0, -1, 5, -1, 0, -1, 0};
-				result = applyConvolution(image, sharpenKernel, 3);
-				break;
+	/**
+	 * Apply a point filter to a row of packed ARGB pixels with the same arithmetic as applyFilter
+	 */
+	public static void applyPointFilter(int[] src, int[] dst, FilterType filter) {
+		PointLut.compile(Collections.singletonList(filter)).apply(src, dst, Math.min(src.length, dst.length));
+	}
 
+	/**
+	 * Reference definition of a per-channel point filter on one 0-255 sample. These are the
+	 * values every lookup table is built from; GRAYSCALE mixes channels and is not handled here.
+	 */
+	public static int applyChannelFilter(FilterType filter, int value) {
+		switch (filter) {
 			case BRIGHTNESS:
-				for (int y = 0; y < height; y++) {
-					for (int x = 0; x < width; x++) {
-						int rgb = image.getRGB(x, y);
-						int r = Math.min(255, ((rgb >> 16) & 0xFF) + 30);
-						int g = Math.min(255, ((rgb >> 8) & 0xFF) + 30);
-						int b = Math.min(255, (rgb & 0xFF) + 30);
-						result.setRGB(x, y, (r << 16) | (g << 8) | b);
-					}
-				}
-				break;
-
+				return Math.min(255, Math.max(0, value + BRIGHTNESS_OFFSET));
 			case CONTRAST:
-				double factor = 1.5;
-				for (int y = 0; y < height; y++) {
-					for (int x = 0; x < width; x++) {
-						int rgb = image.getRGB(x, y);
-						int r = (int)Math.min(255, Math.max(0, factor * ((rgb >> 16) & 0xFF)));
-						int g = (int)Math.min(255, Math.max(0, factor * ((rgb >> 8) & 0xFF)));
-						int b = (int)Math.min(255, Math.max(0, factor * (rgb & 0xFF)));
-						result.setRGB(x, y, (r << 16) | (g << 8) | b);
-					}
-				}
-				break;
+				// Fixed-point ((v - 128) * factor) + 128
+				return Math.min(255, Math.max(0, (((value - 128) * CONTRAST_FIXED) >> 8) + 128));
+			default:
+				throw new IllegalArgumentException("Not a per-channel filter: " + filter);
+		}
+	}
 
+	/**
+	 * Get the convolution kernel for a stencil filter
+	 */
+	public static float[] getKernel(FilterType filter) {
+		switch (filter) {
+			case BLUR:
+				return BLUR_KERNEL.clone();
+			case SHARPEN:
+				return SHARPEN_KERNEL.clone();
 			default:
-				return deepCopy(image);
+				throw new IllegalArgumentException("Not a convolution filter: " + filter);
 		}
+	}
 
-		return result;
+	/**
+	 * Get the kernel width of a stencil filter
+	 */
+	public static int getKernelSize(FilterType filter) {
+		return KERNEL_SIZE;
 	}
 
 	/**
-	 * Apply convolution filter to image
+	 * Apply convolution filter to image, working on the backing int[] of packed frames directly
 	 */
-	private static BufferedImage applyConvolution(BufferedImage image, float[] kernel, int kernelSize) {
+	private static void applyConvolution(BufferedImage image, BufferedImage result, float[] kernel, int kernelSize) {
 		int width = image.getWidth();
 		int height = image.getHeight();
-		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-		int offset = kernelSize / 2;
+		PixelAccess src = PixelAccess.of(image);
+		PixelAccess dst = PixelAccess.of(result);
 
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				float r = 0, g = 0, b = 0;
-
-				for (int ky = 0; ky < kernelSize; ky++) {
-					for (int kx = 0; kx < kernelSize; kx++) {
-						int px = Math.min(Math.max(x + kx - offset, 0), width - 1);
-						int py = Math.min(Math.max(y + ky - offset, 0), height - 1);
-
-						int rgb = image.getRGB(px, py);
-						float weight = kernel[ky * kernelSize + kx];
-
-						r += weight * ((rgb >> 16) & 0xFF);
-						g += weight * ((rgb >> 8) & 0xFF);
-						b += weight * (rgb & 0xFF);
-					}
-				}
-
-				int finalR = Math.min(255, Math.max(0, (int)r));
-				int finalG = Math.min(255, Math.max(0, (int)g));
-				int finalB = Math.min(255, Math.max(0, (int)b));
+		// Frames that are not packed ints go through leased copies
+		int[] srcPixels = src.getPackedFrameFor(dst);
+		int[] dstPixels = dst.getPackedFrame();
+		try (BufferPool.Lease<int[]> srcLease = srcPixels == null ? BufferPool.get().leaseInts(width * height) : null;
+		     BufferPool.Lease<int[]> dstLease = dstPixels == null ? BufferPool.get().leaseInts(width * height) : null) {
+			if (srcLease != null) {
+				srcPixels = srcLease.get();
+				src.readFrame(srcPixels);
+			}
+			if (dstLease != null) {
+				dstPixels = dstLease.get();
+			}
 
-				result.setRGB(x, y, (finalR << 16) | (finalG << 8) | finalB);
+			VectorUtils.convolve(srcPixels, dstPixels, width, height, kernel, kernelSize, 0, height);
+			if (dstLease != null) {
+				dst.writeFrame(dstPixels);
 			}
 		}
-
-		return result;
-	}
-
-	/**
-	 * Resize an image to target dimensions
-	 */
-	public static BufferedImage resizeImage(BufferedImage image, int targetWidth, int targetHeight) {
-		BufferedImage resized = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
-		Graphics2D g = resized.createGraphics();
-		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-		g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
-		g.dispose();
-		return resized;
 	}
 
 	/**
@@ -183,11 +365,11 @@ public class ImageUtils {
 	 * Vector-optimized batch pixel operations
 	 */
 	public static void getRGBArray(BufferedImage image, int[] pixels) {
-		image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+		PixelAccess.of(image).readFrame(pixels);
 	}
 
 	public static void setRGBArray(BufferedImage image, int[] pixels) {
-		image.setRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
+		PixelAccess.of(image).writeFrame(pixels);
 	}
 
 	/**
@@ -214,4 +396,4 @@ public class ImageUtils {
 		g.dispose();
 		return argbImage;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Packed ARGB frame stored off-heap in a MemorySegment owned by an Arena, so image-sized
+ * intermediates never become large heap arrays. Rows are contiguous ints in native byte order.
+ * A frame without alpha stores every pixel as opaque, like reading a TYPE_INT_RGB image.
+ * Convert back to a BufferedImage only where one is needed, at the encode boundary.
+ */
+public final class OffHeapImage implements PixelRows {
+
+	private final MemorySegment segment;
+	private final int width;
+	private final int height;
+	private final boolean alpha;
+
+	private OffHeapImage(MemorySegment segment, int width, int height, boolean alpha) {
+		this.segment = segment;
+		this.width = width;
+		this.height = height;
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Allocate a zeroed frame that lives until the arena is closed
+	 */
+	public static OffHeapImage allocate(Arena arena, int width, int height, boolean alpha) {
+		MemorySegment segment = arena.allocate((long) width * height * Integer.BYTES, Integer.BYTES);
+		return new OffHeapImage(segment, width, height, alpha);
+	}
+
+	/**
+	 * Copy an image into a new frame; alpha is kept when the image's color model has it
+	 */
+	public static OffHeapImage copyOf(Arena arena, BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		OffHeapImage frame = allocate(arena, width, height, image.getColorModel().hasAlpha());
+
+		PixelAccess src = PixelAccess.of(image);
+		try (BufferPool.Lease<int[]> rowLease = BufferPool.get().leaseInts(width)) {
+			int[] row = rowLease.get();
+			for (int y = 0; y < height; y++) {
+				src.readRow(0, y, width, row, 0);
+				frame.writeRow(0, y, width, row, 0);
+			}
+		}
+		return frame;
+	}
+
+	/**
+	 * Copy of this frame in the same arena
+	 */
+	public OffHeapImage copy(Arena arena) {
+		OffHeapImage frame = allocate(arena, width, height, alpha);
+		MemorySegment.copy(segment, 0, frame.segment, 0, segment.byteSize());
+		return frame;
+	}
+
+	/**
+	 * Heap image for encoding over a pooled buffer: TYPE_INT_ARGB with alpha, TYPE_INT_RGB without
+	 */
+	public BufferedImage toBufferedImage() {
+		BufferedImage image = BufferPool.get().createImage(width, height, alpha);
+
+		PixelAccess dst = PixelAccess.of(image);
+		try (BufferPool.Lease<int[]> rowLease = BufferPool.get().leaseInts(width)) {
+			int[] row = rowLease.get();
+			for (int y = 0; y < height; y++) {
+				readRow(0, y, width, row, 0);
+				dst.writeRow(0, y, width, row, 0);
+			}
+		}
+		return image;
+	}
+
+	public MemorySegment getSegment() {
+		return segment;
+	}
+
+	public boolean hasAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * Byte offset of pixel (x, y) in the segment
+	 */
+	public long offsetOf(int x, int y) {
+		return ((long) y * width + x) * Integer.BYTES;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public void readRow(int x, int y, int length, int[] dst, int offset) {
+		MemorySegment.copy(segment, ValueLayout.JAVA_INT, offsetOf(x, y), dst, offset, length);
+	}
+
+	@Override
+	public void writeRow(int x, int y, int length, int[] src, int offset) {
+		if (alpha) {
+			MemorySegment.copy(src, offset, segment, ValueLayout.JAVA_INT, offsetOf(x, y), length);
+			return;
+		}
+
+		long index = offsetOf(x, y) / Integer.BYTES;
+		for (int i = 0; i < length; i++) {
+			segment.setAtIndex(ValueLayout.JAVA_INT, index + i, src[offset + i] | VectorUtils.ALPHA_MASK);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Row-level pixel access that reads and writes the backing DataBuffer of a raster directly.
+ * Pixels are exchanged as packed ARGB ints; TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_3BYTE_BGR and
+ * TYPE_BYTE_GRAY are handled natively, anything else goes through getRGB/setRGB.
+ */
+public final class PixelAccess implements PixelRows {
+
+	private enum Layout {
+		INT_RGB, INT_ARGB, BYTE_BGR, BYTE_GRAY, COLOR_MODEL
+	}
+
+	private final BufferedImage image;
+	private final Layout layout;
+	private final int[] intData;
+	private final byte[] byteData;
+	private final int baseOffset;
+	private final int scanlineStride;
+	private final int pixelStride;
+	private final int width;
+	private final int height;
+
+	private PixelAccess(BufferedImage image, Layout layout, int[] intData, byte[] byteData,
+	                    int baseOffset, int scanlineStride, int pixelStride) {
+		this.image = image;
+		this.layout = layout;
+		this.intData = intData;
+		this.byteData = byteData;
+		this.baseOffset = baseOffset;
+		this.scanlineStride = scanlineStride;
+		this.pixelStride = pixelStride;
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+	}
+
+	/**
+	 * Create an accessor for an image, picking the native layout when the raster allows it
+	 */
+	public static PixelAccess of(BufferedImage image) {
+		WritableRaster raster = image.getRaster();
+		SampleModel sampleModel = raster.getSampleModel();
+		DataBuffer buffer = raster.getDataBuffer();
+
+		if (buffer.getNumBanks() != 1) {
+			return colorModel(image);
+		}
+
+		// Element index of raster pixel (0, 0), accounting for getSubimage translation
+		int translateX = raster.getSampleModelTranslateX();
+		int translateY = raster.getSampleModelTranslateY();
+
+		switch (image.getType()) {
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_ARGB:
+				if (buffer instanceof DataBufferInt && sampleModel instanceof SinglePixelPackedSampleModel) {
+					int scanline = ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+					int base = buffer.getOffset() - translateY * scanline - translateX;
+					Layout layout = image.getType() == BufferedImage.TYPE_INT_RGB ? Layout.INT_RGB : Layout.INT_ARGB;
+					return new PixelAccess(image, layout, ((DataBufferInt) buffer).getData(), null,
+							base, scanline, 1);
+				}
+				break;
+
+			case BufferedImage.TYPE_3BYTE_BGR:
+			case BufferedImage.TYPE_BYTE_GRAY:
+				if (buffer instanceof DataBufferByte && sampleModel instanceof ComponentSampleModel) {
+					ComponentSampleModel csm = (ComponentSampleModel) sampleModel;
+					int scanline = csm.getScanlineStride();
+					int stride = csm.getPixelStride();
+					int[] bands = csm.getBandOffsets();
+					boolean bgr = image.getType() == BufferedImage.TYPE_3BYTE_BGR;
+					if (bgr && (stride != 3 || bands[0] != 2 || bands[1] != 1 || bands[2] != 0)) {
+						break;
+					}
+					if (!bgr && (stride != 1 || bands[0] != 0)) {
+						break;
+					}
+					int base = buffer.getOffset() - translateY * scanline - translateX * stride;
+					return new PixelAccess(image, bgr ? Layout.BYTE_BGR : Layout.BYTE_GRAY, null,
+							((DataBufferByte) buffer).getData(), base, scanline, stride);
+				}
+				break;
+
+			default:
+				break;
+		}
+
+		return colorModel(image);
+	}
+
+	private static PixelAccess colorModel(BufferedImage image) {
+		return new PixelAccess(image, Layout.COLOR_MODEL, null, null, 0, 0, 0);
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Whether rows are read straight from the backing buffer rather than the color model
+	 */
+	public boolean isDirect() {
+		return layout != Layout.COLOR_MODEL;
+	}
+
+	/**
+	 * The backing int[] when the image is a contiguous packed-int frame (scanline == width,
+	 * no offset), so kernels can work on it in place; null otherwise.
+	 * TYPE_INT_RGB frames carry no alpha in the top byte.
+	 */
+	public int[] getPackedFrame() {
+		if ((layout == Layout.INT_RGB || layout == Layout.INT_ARGB)
+				&& baseOffset == 0 && scanlineStride == width) {
+			return intData;
+		}
+		return null;
+	}
+
+	/**
+	 * getPackedFrame() when its pixels can go to a kernel writing into dst unchanged; null when
+	 * this is a TYPE_INT_RGB frame and dst keeps alpha, where the zero top byte would come out
+	 * fully transparent. readFrame() supplies opaque pixels in that case.
+	 */
+	public int[] getPackedFrameFor(PixelAccess dst) {
+		if (layout == Layout.INT_RGB && dst.image.getColorModel().hasAlpha()) {
+			return null;
+		}
+		return getPackedFrame();
+	}
+
+	/**
+	 * Read length pixels of row y starting at column x into dst[offset..] as packed ARGB
+	 */
+	@Override
+	public void readRow(int x, int y, int length, int[] dst, int offset) {
+		int index = baseOffset + y * scanlineStride + x * pixelStride;
+
+		switch (layout) {
+			case INT_RGB:
+				for (int i = 0; i < length; i++) {
+					dst[offset + i] = 0xFF000000 | intData[index + i];
+				}
+				break;
+
+			case INT_ARGB:
+				System.arraycopy(intData, index, dst, offset, length);
+				break;
+
+			case BYTE_BGR:
+				for (int i = 0; i < length; i++, index += 3) {
+					dst[offset + i] = 0xFF000000
+							| ((byteData[index + 2] & 0xFF) << 16)
+							| ((byteData[index + 1] & 0xFF) << 8)
+							| (byteData[index] & 0xFF);
+				}
+				break;
+
+			case BYTE_GRAY:
+				// Gray samples are treated as sRGB-encoded, unlike getRGB's linear gray conversion
+				for (int i = 0; i < length; i++) {
+					int gray = byteData[index + i] & 0xFF;
+					dst[offset + i] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+				}
+				break;
+
+			default:
+				image.getRGB(x, y, length, 1, dst, offset, length);
+				break;
+		}
+	}
+
+	/**
+	 * Write length packed ARGB pixels from src[offset..] into row y starting at column x
+	 */
+	@Override
+	public void writeRow(int x, int y, int length, int[] src, int offset) {
+		int index = baseOffset + y * scanlineStride + x * pixelStride;
+
+		switch (layout) {
+			case INT_RGB:
+				for (int i = 0; i < length; i++) {
+					intData[index + i] = src[offset + i] & 0x00FFFFFF;
+				}
+				break;
+
+			case INT_ARGB:
+				System.arraycopy(src, offset, intData, index, length);
+				break;
+
+			case BYTE_BGR:
+				for (int i = 0; i < length; i++, index += 3) {
+					int pixel = src[offset + i];
+					byteData[index] = (byte) pixel;
+					byteData[index + 1] = (byte) (pixel >> 8);
+					byteData[index + 2] = (byte) (pixel >> 16);
+				}
+				break;
+
+			case BYTE_GRAY:
+				for (int i = 0; i < length; i++) {
+					int pixel = src[offset + i];
+					int gray = (((pixel >> 16) & 0xFF) * VectorUtils.RED_WEIGHT
+							+ ((pixel >> 8) & 0xFF) * VectorUtils.GREEN_WEIGHT
+							+ (pixel & 0xFF) * VectorUtils.BLUE_WEIGHT) >> 8;
+					byteData[index + i] = (byte) gray;
+				}
+				break;
+
+			default:
+				image.setRGB(x, y, length, 1, src, offset, length);
+				break;
+		}
+	}
+
+	/**
+	 * Read the whole image into a packed ARGB array of at least width * height
+	 */
+	public void readFrame(int[] dst) {
+		for (int y = 0; y < height; y++) {
+			readRow(0, y, width, dst, y * width);
+		}
+	}
+
+	/**
+	 * Write a packed ARGB array of at least width * height into the whole image
+	 */
+	public void writeFrame(int[] src) {
+		for (int y = 0; y < height; y++) {
+			writeRow(0, y, width, src, y * width);
+		}
+	}
+}
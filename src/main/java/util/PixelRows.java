@@ -0,0 +1,21 @@
+package util;
+
+/**
+ * Row-level access to an image as packed ARGB ints, independent of where the pixels are stored
+ */
+public interface PixelRows {
+
+	int getWidth();
+
+	int getHeight();
+
+	/**
+	 * Read length pixels of row y starting at column x into dst[offset..]
+	 */
+	void readRow(int x, int y, int length, int[] dst, int offset);
+
+	/**
+	 * Write length pixels from src[offset..] into row y starting at column x
+	 */
+	void writeRow(int x, int y, int length, int[] src, int offset);
+}
@@ -0,0 +1,383 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Persistent content-addressed cache of processed outputs. Entries are keyed by the SHA-256 of
+ * the input file plus a hash of the canonical processing settings, so an unchanged input with
+ * unchanged settings is restored by hard-linking (or copying) the stored result instead of being
+ * decoded again. A stamp index of (path, size, mtime) -> hash avoids rehashing unchanged inputs,
+ * and the cache is trimmed to a byte budget by evicting least recently used entries. Last use
+ * is kept in the index rather than in entry mtimes, since restored outputs share the entry's inode.
+ *
+ * Settings come from system properties:
+ * imageprocessor.cache (true/false, default false),
+ * imageprocessor.cache.dir (default "result_cache"),
+ * imageprocessor.cache.maxMB (default 2048).
+ */
+public final class ResultCache {
+
+	private static final Logger LOGGER = Logger.getLogger(ResultCache.class.getName());
+
+	// Bump when processing changes so results from older builds are not reused
+	private static final String FORMAT_VERSION = "2";
+	private static final String STAMP_FILE = "stamps.idx";
+	// Index lines recording an entry's last use; stamp lines have four fields, these three
+	private static final String USE_RECORD = "@";
+	private static final String STAGING_SUFFIX = ".tmp";
+	private static final long DEFAULT_MAX_MB = 2048;
+	// Eviction trims to this fraction of the budget so it does not run on every store
+	private static final double EVICT_TARGET = 0.9;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final ResultCache DISABLED = new ResultCache(null, null, 0);
+	private static final Map<Path, Stamp> STAMPS = new ConcurrentHashMap<>();
+	// Entry file name -> last restore or store time in millis, the LRU clock
+	private static final Map<String, Long> LAST_USED = new ConcurrentHashMap<>();
+	private static final AtomicLong CACHED_BYTES = new AtomicLong(-1);
+	private static final Object EVICTION_LOCK = new Object();
+	private static volatile Boolean enabledOverride;
+	private static volatile boolean stampsLoaded;
+
+	/**
+	 * Input content hash remembered together with the file attributes it was computed for
+	 */
+	private static final class Stamp {
+		private final String hash;
+		private final long size;
+		private final long modified;
+
+		private Stamp(String hash, long size, long modified) {
+			this.hash = hash;
+			this.size = size;
+			this.modified = modified;
+		}
+	}
+
+	private final Path directory;
+	private final String settingsHash;
+	private final long maxBytes;
+
+	private ResultCache(Path directory, String settingsHash, long maxBytes) {
+		this.directory = directory;
+		this.settingsHash = settingsHash;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Cache for one kind of run; settingsKey must capture everything that affects the output bytes
+	 */
+	public static ResultCache open(String settingsKey) {
+		if (!isEnabled()) {
+			return DISABLED;
+		}
+
+		Path directory = Paths.get(System.getProperty("imageprocessor.cache.dir", "result_cache")).toAbsolutePath();
+		long maxBytes = Long.getLong("imageprocessor.cache.maxMB", DEFAULT_MAX_MB) * 1024 * 1024;
+		try {
+			Files.createDirectories(directory);
+			loadStamps(directory);
+			if (CACHED_BYTES.get() < 0) {
+				CACHED_BYTES.compareAndSet(-1, measure(directory));
+			}
+		} catch (IOException e) {
+			LOGGER.warning("Result cache unavailable: " + e.getMessage());
+			return DISABLED;
+		}
+		return new ResultCache(directory, sha256(FORMAT_VERSION + "|" + settingsKey).substring(0, 16), maxBytes);
+	}
+
+	public static boolean isEnabled() {
+		Boolean override = enabledOverride;
+		if (override != null) {
+			return override;
+		}
+		return Boolean.parseBoolean(System.getProperty("imageprocessor.cache", "false"));
+	}
+
+	/**
+	 * Force the cache on or off for this process (null restores the system property setting),
+	 * e.g. so timing comparisons always do the real work
+	 */
+	public static void setEnabled(Boolean enabled) {
+		enabledOverride = enabled;
+	}
+
+	/**
+	 * Restore the stored result for an input into outputPath, replacing any existing file;
+	 * returns false on a miss. Writers must replace outputs rather than overwrite them in place,
+	 * since a restored output shares its data with the cache entry.
+	 */
+	public boolean restore(Path input, Path outputPath) {
+		if (directory == null) {
+			return false;
+		}
+
+		try {
+			Path entry = entryFor(input, outputPath);
+			if (!Files.isRegularFile(entry)) {
+				return false;
+			}
+
+			Files.deleteIfExists(outputPath);
+			try {
+				Files.createLink(outputPath, entry);
+			} catch (IOException | UnsupportedOperationException e) {
+				// Different file system or no hard-link support
+				Files.copy(entry, outputPath, StandardCopyOption.REPLACE_EXISTING);
+			}
+			// Touching the entry's mtime would also change the output, which is the same inode
+			LAST_USED.put(entry.getFileName().toString(), System.currentTimeMillis());
+			return true;
+		} catch (IOException e) {
+			LOGGER.fine("Cache restore failed for " + input + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Record a freshly written output for an input
+	 */
+	public void store(Path input, Path outputPath) {
+		if (directory == null) {
+			return;
+		}
+
+		try {
+			Path entry = entryFor(input, outputPath);
+			if (Files.exists(entry)) {
+				return;
+			}
+			Files.createDirectories(entry.getParent());
+
+			// Stage under a name unique across threads and processes sharing the directory,
+			// so concurrent readers never see a partial entry
+			Path staged = entry.resolveSibling(entry.getFileName() + "." + UUID.randomUUID() + STAGING_SUFFIX);
+			try {
+				try {
+					Files.createLink(staged, outputPath);
+				} catch (IOException | UnsupportedOperationException e) {
+					Files.copy(outputPath, staged, StandardCopyOption.REPLACE_EXISTING);
+				}
+				Files.move(staged, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				// Only left behind when staging or the move failed
+				Files.deleteIfExists(staged);
+			}
+			LAST_USED.put(entry.getFileName().toString(), System.currentTimeMillis());
+
+			if (CACHED_BYTES.addAndGet(Files.size(entry)) > maxBytes) {
+				evict();
+			}
+		} catch (IOException e) {
+			LOGGER.fine("Cache store failed for " + input + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Persist the stamp index so the next run can skip hashing unchanged inputs and
+	 * evicts by the same last-use order
+	 */
+	public void flush() {
+		if (directory == null) {
+			return;
+		}
+
+		Path index = directory.resolve(STAMP_FILE);
+		Path staged = directory.resolve(STAMP_FILE + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(staged, StandardCharsets.UTF_8)) {
+			for (Map.Entry<Path, Stamp> entry : STAMPS.entrySet()) {
+				Stamp stamp = entry.getValue();
+				writer.write(stamp.hash + "\t" + stamp.size + "\t" + stamp.modified + "\t" + entry.getKey());
+				writer.newLine();
+			}
+			for (Map.Entry<String, Long> use : LAST_USED.entrySet()) {
+				writer.write(USE_RECORD + "\t" + use.getValue() + "\t" + use.getKey());
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			LOGGER.warning("Could not write cache index: " + e.getMessage());
+			return;
+		}
+		try {
+			Files.move(staged, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			LOGGER.warning("Could not replace cache index: " + e.getMessage());
+		}
+	}
+
+	private Path entryFor(Path input, Path outputPath) throws IOException {
+		String inputHash = contentHash(input);
+		String name = inputHash + "-" + settingsHash + "." + ImageUtils.getOutputFormat(outputPath);
+		return directory.resolve(inputHash.substring(0, 2)).resolve(name);
+	}
+
+	/**
+	 * Content hash of an input, reusing the stamp when size and mtime are unchanged
+	 */
+	private static String contentHash(Path input) throws IOException {
+		Path key = input.toAbsolutePath().normalize();
+		BasicFileAttributes attrs = Files.readAttributes(key, BasicFileAttributes.class);
+		long modified = attrs.lastModifiedTime().toMillis();
+
+		Stamp stamp = STAMPS.get(key);
+		if (stamp != null && stamp.size == attrs.size() && stamp.modified == modified) {
+			return stamp.hash;
+		}
+
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = Files.newInputStream(key)) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		String hash = toHex(digest.digest());
+		STAMPS.put(key, new Stamp(hash, attrs.size(), modified));
+		return hash;
+	}
+
+	/**
+	 * Delete least recently used entries until the cache is back under its budget
+	 */
+	private void evict() throws IOException {
+		synchronized (EVICTION_LOCK) {
+			if (CACHED_BYTES.get() <= maxBytes) {
+				return;
+			}
+
+			List<Map.Entry<Path, BasicFileAttributes>> entries = listEntries(directory);
+			entries.sort(Comparator.comparingLong(ResultCache::lastUsed));
+			long total = 0;
+			for (Map.Entry<Path, BasicFileAttributes> entry : entries) {
+				total += entry.getValue().size();
+			}
+
+			long target = (long) (maxBytes * EVICT_TARGET);
+			int evicted = 0;
+			for (int i = 0; i < entries.size() && total > target; i++) {
+				Path file = entries.get(i).getKey();
+				if (Files.deleteIfExists(file)) {
+					LAST_USED.remove(file.getFileName().toString());
+					evicted++;
+				}
+				// Gone either way, possibly evicted by another process sharing the directory
+				total -= entries.get(i).getValue().size();
+			}
+			CACHED_BYTES.set(total);
+			LOGGER.fine("Evicted " + evicted + " cache entries, " + (total / 1024 / 1024) + " MB retained");
+		}
+	}
+
+	/**
+	 * Last restore or store of an entry; entries not used since the index was written fall
+	 * back to their creation time
+	 */
+	private static long lastUsed(Map.Entry<Path, BasicFileAttributes> entry) {
+		Long used = LAST_USED.get(entry.getKey().getFileName().toString());
+		return used != null ? used : entry.getValue().creationTime().toMillis();
+	}
+
+	private static long measure(Path directory) throws IOException {
+		long total = 0;
+		for (Map.Entry<Path, BasicFileAttributes> entry : listEntries(directory)) {
+			total += entry.getValue().size();
+		}
+		return total;
+	}
+
+	/**
+	 * All entry files with their attributes; entries live one shard directory down. Staged
+	 * files belong to stores still in progress, and files deleted while listing are skipped.
+	 */
+	private static List<Map.Entry<Path, BasicFileAttributes>> listEntries(Path directory) throws IOException {
+		List<Map.Entry<Path, BasicFileAttributes>> entries = new ArrayList<>();
+		try (DirectoryStream<Path> shards = Files.newDirectoryStream(directory, Files::isDirectory)) {
+			for (Path shard : shards) {
+				try (DirectoryStream<Path> files = Files.newDirectoryStream(shard)) {
+					for (Path file : files) {
+						if (file.getFileName().toString().endsWith(STAGING_SUFFIX)) {
+							continue;
+						}
+						try {
+							entries.add(new AbstractMap.SimpleImmutableEntry<>(file,
+									Files.readAttributes(file, BasicFileAttributes.class)));
+						} catch (NoSuchFileException e) {
+							// Evicted or replaced by another thread since the listing
+						}
+					}
+				}
+			}
+		}
+		return entries;
+	}
+
+	private static synchronized void loadStamps(Path directory) {
+		if (stampsLoaded) {
+			return;
+		}
+		stampsLoaded = true;
+
+		Path index = directory.resolve(STAMP_FILE);
+		if (!Files.isRegularFile(index)) {
+			return;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", 4);
+				if (fields.length == 3 && USE_RECORD.equals(fields[0])) {
+					LAST_USED.putIfAbsent(fields[2], Long.parseLong(fields[1]));
+				} else if (fields.length == 4) {
+					STAMPS.putIfAbsent(Paths.get(fields[3]),
+							new Stamp(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warning("Ignoring unreadable cache index: " + e.getMessage());
+		}
+	}
+
+	private static String sha256(String text) {
+		return toHex(newDigest().digest(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -1,11 +1,18 @@
 package util;
 
 import jdk.incubator.vector.*;
+import model.FilterType;
+
 import java.awt.image.BufferedImage;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
 
 /**
  * Thread-safe utility class for Vector API operations
- * Fixed issues with thread safety and proper exception handling
+ * All kernels work on caller-owned buffers and hold no locks
  */
 public class VectorUtils {
 
@@ -13,14 +20,22 @@ public class VectorUtils {
 	public static final VectorSpecies<Integer> INT_SPECIES;
 	public static final VectorSpecies<Float> FLOAT_SPECIES;
 
-	// Initialize species safely with fallback
+	// Initialize species safely with fallback; imageprocessor.vector.bits pins a narrower
+	// width than the platform prefers, e.g. to benchmark the kernels at each width
 	static {
 		VectorSpecies<Integer> intSpecies;
 		VectorSpecies<Float> floatSpecies;
 
 		try {
-			intSpecies = IntVector.SPECIES_PREFERRED;
-			floatSpecies = FloatVector.SPECIES_PREFERRED;
+			int bits = Integer.getInteger("imageprocessor.vector.bits", 0);
+			if (bits > 0) {
+				VectorShape shape = VectorShape.forBitSize(Math.min(bits, IntVector.SPECIES_MAX.vectorBitSize()));
+				intSpecies = VectorSpecies.of(int.class, shape);
+				floatSpecies = VectorSpecies.of(float.class, shape);
+			} else {
+				intSpecies = IntVector.SPECIES_PREFERRED;
+				floatSpecies = FloatVector.SPECIES_PREFERRED;
+			}
 		} catch (Exception e) {
 			// Fallback to a basic species if preferred fails
 			intSpecies = IntVector.SPECIES_128;
@@ -87,41 +102,12 @@ public class VectorUtils {
 			throw new IllegalArgumentException("Source and destination arrays must have same length");
 		}
 
-		int length = src.length;
-		int i = 0;
-
-		try {
-			// Process in vector chunks
-			for (; i < INT_SPECIES.loopBound(length); i += INT_SPECIES.length()) {
-				IntVector pixels = IntVector.fromArray(INT_SPECIES, src, i);
-				ColorComponents components = new ColorComponents(pixels);
-
-				IntVector newRed = clamp(components.red.add(brightness));
-				IntVector newGreen = clamp(components.green.add(brightness));
-				IntVector newBlue = clamp(components.blue.add(brightness));
-
-				IntVector result = components.alpha.lanewise(VectorOperators.LSHL, ALPHA_SHIFT)
-						.or(newRed.lanewise(VectorOperators.LSHL, RED_SHIFT))
-						.or(newGreen.lanewise(VectorOperators.LSHL, GREEN_SHIFT))
-						.or(newBlue);
-
-				result.intoArray(dst, i);
-			}
-		} catch (Exception e) {
-			// If vector operations fail, fall back to scalar processing
-			System.err.println("Vector operation failed, falling back to scalar: " + e.getMessage());
-			i = 0; // Reset to process everything scalar
-		}
-
-		// Handle remaining elements with scalar operations
-		for (; i < length; i++) {
-			int pixel = src[i];
-			int a = (pixel >> 24) & 0xFF;
-			int r = Math.max(0, Math.min(255, ((pixel >> 16) & 0xFF) + brightness));
-			int g = Math.max(0, Math.min(255, ((pixel >> 8) & 0xFF) + brightness));
-			int b = Math.max(0, Math.min(255, (pixel & 0xFF) + brightness));
-			dst[i] = (a << 24) | (r << 16) | (g << 8) | b;
+		// One table lookup per channel instead of clamp arithmetic per sample
+		int[] table = new int[256];
+		for (int v = 0; v < table.length; v++) {
+			table[v] = Math.max(0, Math.min(255, v + brightness));
 		}
+		PointLut.ofChannelTable(table).applyVector(src, dst, src.length);
 	}
 
 	/**
@@ -135,41 +121,14 @@ public class VectorUtils {
 			throw new IllegalArgumentException("Source and destination arrays must have same length");
 		}
 
-		int length = src.length;
-		int i = 0;
 		int contrastInt = (int)(contrast * 256); // Fixed-point arithmetic
 
-		try {
-			for (; i < INT_SPECIES.loopBound(length); i += INT_SPECIES.length()) {
-				IntVector pixels = IntVector.fromArray(INT_SPECIES, src, i);
-				ColorComponents components = new ColorComponents(pixels);
-
-				// Apply contrast: newValue = ((oldValue - 128) * contrast) + 128
-				IntVector newRed = clamp(components.red.sub(128).mul(contrastInt).lanewise(VectorOperators.LSHR, 8).add(128));
-				IntVector newGreen = clamp(components.green.sub(128).mul(contrastInt).lanewise(VectorOperators.LSHR, 8).add(128));
-				IntVector newBlue = clamp(components.blue.sub(128).mul(contrastInt).lanewise(VectorOperators.LSHR, 8).add(128));
-
-				IntVector result = components.alpha.lanewise(VectorOperators.LSHL, ALPHA_SHIFT)
-						.or(newRed.lanewise(VectorOperators.LSHL, RED_SHIFT))
-						.or(newGreen.lanewise(VectorOperators.LSHL, GREEN_SHIFT))
-						.or(newBlue);
-
-				result.intoArray(dst, i);
-			}
-		} catch (Exception e) {
-			System.err.println("Vector contrast operation failed, falling back to scalar: " + e.getMessage());
-			i = 0;
-		}
-
-		// Handle remaining elements
-		for (; i < length; i++) {
-			int pixel = src[i];
-			int a = (pixel >> 24) & 0xFF;
-			int r = (int)Math.max(0, Math.min(255, ((((pixel >> 16) & 0xFF) - 128) * contrast) + 128));
-			int g = (int)Math.max(0, Math.min(255, ((((pixel >> 8) & 0xFF) - 128) * contrast) + 128));
-			int b = (int)Math.max(0, Math.min(255, (((pixel & 0xFF) - 128) * contrast) + 128));
-			dst[i] = (a << 24) | (r << 16) | (g << 8) | b;
+		// newValue = ((oldValue - 128) * contrast) + 128, tabulated once per call
+		int[] table = new int[256];
+		for (int v = 0; v < table.length; v++) {
+			table[v] = Math.max(0, Math.min(255, (((v - 128) * contrastInt) >> 8) + 128));
 		}
+		PointLut.ofChannelTable(table).applyVector(src, dst, src.length);
 	}
 
 	/**
@@ -183,102 +142,350 @@ public class VectorUtils {
 			throw new IllegalArgumentException("Source and destination arrays must have same length");
 		}
 
-		int length = src.length;
-		int i = 0;
+		PointLut.compile(Collections.singletonList(FilterType.GRAYSCALE)).applyVector(src, dst, src.length);
+	}
 
-		try {
-			for (; i < INT_SPECIES.loopBound(length); i += INT_SPECIES.length()) {
-				IntVector pixels = IntVector.fromArray(INT_SPECIES, src, i);
-				ColorComponents components = new ColorComponents(pixels);
-
-				// Calculate grayscale value using fixed-point arithmetic
-				IntVector gray = components.red.mul(RED_WEIGHT)
-						.add(components.green.mul(GREEN_WEIGHT))
-						.add(components.blue.mul(BLUE_WEIGHT))
-						.lanewise(VectorOperators.LSHR, 8);
-
-				IntVector result = components.alpha.lanewise(VectorOperators.LSHL, ALPHA_SHIFT)
-						.or(gray.lanewise(VectorOperators.LSHL, RED_SHIFT))
-						.or(gray.lanewise(VectorOperators.LSHL, GREEN_SHIFT))
-						.or(gray);
-
-				result.intoArray(dst, i);
-			}
-		} catch (Exception e) {
-			System.err.println("Vector grayscale operation failed, falling back to scalar: " + e.getMessage());
-			i = 0;
+	/**
+	 * Lock-free convolution of a whole image; all pixel buffers are owned by this call
+	 */
+	public static void applyConvolutionVector(BufferedImage src, BufferedImage dst, float[] kernel, int kernelSize) {
+		if (src == null || dst == null || kernel == null) {
+			throw new IllegalArgumentException("Parameters cannot be null");
 		}
 
-		// Handle remaining elements
-		for (; i < length; i++) {
-			int pixel = src[i];
-			int a = (pixel >> 24) & 0xFF;
-			int r = (pixel >> 16) & 0xFF;
-			int g = (pixel >> 8) & 0xFF;
-			int b = pixel & 0xFF;
-			int gray = (int)((r * 0.299) + (g * 0.587) + (b * 0.114));
-			dst[i] = (a << 24) | (gray << 16) | (gray << 8) | gray;
+		int width = src.getWidth();
+		int height = src.getHeight();
+		PixelAccess in = PixelAccess.of(src);
+		PixelAccess out = PixelAccess.of(dst);
+		int[] srcPixels = in.getPackedFrameFor(out);
+		int[] dstPixels = out.getPackedFrame();
+
+		try (BufferPool.Lease<int[]> srcLease = srcPixels == null ? BufferPool.get().leaseInts(width * height) : null;
+		     BufferPool.Lease<int[]> dstLease = dstPixels == null ? BufferPool.get().leaseInts(width * height) : null) {
+			if (srcLease != null) {
+				srcPixels = srcLease.get();
+				in.readFrame(srcPixels);
+			}
+			if (dstLease != null) {
+				dstPixels = dstLease.get();
+			}
+
+			convolveVector(srcPixels, dstPixels, width, height, kernel, kernelSize, 0, height);
+			if (dstLease != null) {
+				out.writeFrame(dstPixels);
+			}
+		} catch (Exception e) {
+			System.err.println("Convolution operation failed: " + e.getMessage());
+			// Create a copy as fallback
+			dst.getGraphics().drawImage(src, 0, 0, null);
 		}
 	}
 
 	/**
-	 * Thread-safe convolution with proper synchronization for BufferedImage access
+	 * Convolve rows [rowStart, rowEnd) of a packed ARGB frame into caller-owned buffers.
+	 * Touches no shared state, so disjoint row bands may run concurrently on the same arrays.
 	 */
-	public static synchronized void applyConvolutionVector(BufferedImage src, BufferedImage dst, float[] kernel, int kernelSize) {
+	public static void convolve(int[] src, int[] dst, int width, int height,
+	                            float[] kernel, int kernelSize, int rowStart, int rowEnd) {
 		if (src == null || dst == null || kernel == null) {
 			throw new IllegalArgumentException("Parameters cannot be null");
 		}
+		if (src.length < width * height || dst.length < width * height) {
+			throw new IllegalArgumentException("Pixel buffers are smaller than the frame");
+		}
 
-		int width = src.getWidth();
-		int height = src.getHeight();
+		for (int y = rowStart; y < rowEnd; y++) {
+			convolvePixelsScalar(src, dst, width, height, kernel, kernelSize, y, 0, width);
+		}
+	}
+
+	/**
+	 * SIMD convolution of rows [rowStart, rowEnd) for 3x3, 5x5 and 7x7 kernels.
+	 * Interior pixels run on FLOAT_SPECIES lanes; border pixels, other kernel sizes and
+	 * frames narrower than a vector fall back to the scalar reference in convolve.
+	 */
+	public static void convolveVector(int[] src, int[] dst, int width, int height,
+	                                  float[] kernel, int kernelSize, int rowStart, int rowEnd) {
+		int radius = kernelSize / 2;
+		if (!isVectorKernelSize(kernelSize) || width < kernelSize + INT_SPECIES.length()
+				|| height < kernelSize) {
+			convolve(src, dst, width, height, kernel, kernelSize, rowStart, rowEnd);
+			return;
+		}
+		if (src.length < width * height || dst.length < width * height) {
+			throw new IllegalArgumentException("Pixel buffers are smaller than the frame");
+		}
+
+		int lanes = INT_SPECIES.length();
+		int[][] rows = new int[kernelSize][];
+		int[] rowBase = new int[kernelSize];
+		Arrays.fill(rows, src);
+
+		for (int y = rowStart; y < rowEnd; y++) {
+			if (y < radius || y >= height - radius) {
+				convolvePixelsScalar(src, dst, width, height, kernel, kernelSize, y, 0, width);
+				continue;
+			}
+
+			for (int ky = 0; ky < kernelSize; ky++) {
+				rowBase[ky] = (y + ky - radius) * width - radius;
+			}
+
+			int rowOffset = y * width;
+			convolvePixelsScalar(src, dst, width, height, kernel, kernelSize, y, 0, radius);
+
+			int x = radius;
+			for (; x + lanes <= width - radius; x += lanes) {
+				IntVector center = IntVector.fromArray(INT_SPECIES, src, rowOffset + x);
+				convolveLanes(rows, rowBase, x, kernel, kernelSize, center).intoArray(dst, rowOffset + x);
+			}
+
+			convolvePixelsScalar(src, dst, width, height, kernel, kernelSize, y, x, width);
+		}
+	}
+
+	/**
+	 * convolveVector over off-heap frames of packed ARGB ints. Interior lanes load straight from
+	 * the source segment with IntVector.fromMemorySegment; borders, other kernel sizes and
+	 * narrow frames use the scalar reference. Same results as the int[] version.
+	 */
+	public static void convolveVector(MemorySegment src, MemorySegment dst, int width, int height,
+	                                  float[] kernel, int kernelSize, int rowStart, int rowEnd) {
+		long frameBytes = (long) width * height * Integer.BYTES;
+		if (src.byteSize() < frameBytes || dst.byteSize() < frameBytes) {
+			throw new IllegalArgumentException("Pixel segments are smaller than the frame");
+		}
+
+		int radius = kernelSize / 2;
+		int lanes = INT_SPECIES.length();
+		boolean vector = isVectorKernelSize(kernelSize) && width >= kernelSize + lanes && height >= kernelSize;
+		long[] rowBase = new long[kernelSize];
+		ByteOrder order = ByteOrder.nativeOrder();
+
+		for (int y = rowStart; y < rowEnd; y++) {
+			if (!vector || y < radius || y >= height - radius) {
+				convolvePixelsScalar(src, dst, width, height, kernel, kernelSize, y, 0, width);
+				continue;
+			}
+
+			for (int ky = 0; ky < kernelSize; ky++) {
+				rowBase[ky] = (long) (y + ky - radius) * width - radius;
+			}
+
+			long rowOffset = (long) y * width;
+			convolvePixelsScalar(src, dst, width, height, kernel, kernelSize, y, 0, radius);
+
+			int x = radius;
+			for (; x + lanes <= width - radius; x += lanes) {
+				long offset = (rowOffset + x) * Integer.BYTES;
+				IntVector center = IntVector.fromMemorySegment(INT_SPECIES, src, offset, order);
+				convolveLanes(src, rowBase, x, kernel, kernelSize, center).intoMemorySegment(dst, offset, order);
+			}
+
+			convolvePixelsScalar(src, dst, width, height, kernel, kernelSize, y, x, width);
+		}
+	}
+
+	/**
+	 * SIMD convolution of one output row from a window of edge-padded source rows.
+	 * window[ky][x + kx] is the tap for output pixel x; the rows are width + kernelSize - 1 long.
+	 */
+	public static void convolveRow(int[][] window, float[] kernel, int kernelSize, int width, int[] out) {
+		int radius = kernelSize / 2;
+		int x = 0;
+
+		if (isVectorKernelSize(kernelSize)) {
+			int[] rowBase = new int[kernelSize];
+			int[] centerRow = window[radius];
+			for (; x < INT_SPECIES.loopBound(width); x += INT_SPECIES.length()) {
+				IntVector center = IntVector.fromArray(INT_SPECIES, centerRow, x + radius);
+				convolveLanes(window, rowBase, x, kernel, kernelSize, center).intoArray(out, x);
+			}
+		}
+
+		convolveRowScalar(window, kernel, kernelSize, x, width, out);
+	}
+
+	/**
+	 * Scalar reference for convolveRow over output columns [xStart, xEnd)
+	 */
+	public static void convolveRowScalar(int[][] window, float[] kernel, int kernelSize,
+	                                     int xStart, int xEnd, int[] out) {
+		int radius = kernelSize / 2;
+
+		for (int x = xStart; x < xEnd; x++) {
+			float r = 0, g = 0, b = 0;
+
+			for (int ky = 0; ky < kernelSize; ky++) {
+				int[] row = window[ky];
+				for (int kx = 0; kx < kernelSize; kx++) {
+					int pixel = row[x + kx];
+					float weight = kernel[ky * kernelSize + kx];
+
+					r += weight * ((pixel >> 16) & 0xFF);
+					g += weight * ((pixel >> 8) & 0xFF);
+					b += weight * (pixel & 0xFF);
+				}
+			}
+
+			int a = (window[radius][x + radius] >> 24) & 0xFF;
+			int finalR = Math.min(255, Math.max(0, (int)r));
+			int finalG = Math.min(255, Math.max(0, (int)g));
+			int finalB = Math.min(255, Math.max(0, (int)b));
+
+			out[x] = (a << 24) | (finalR << 16) | (finalG << 8) | finalB;
+		}
+	}
+
+	/**
+	 * Whether convolveVector has a SIMD path for this kernel width
+	 */
+	public static boolean isVectorKernelSize(int kernelSize) {
+		return (kernelSize == 3 || kernelSize == 5 || kernelSize == 7)
+				&& INT_SPECIES.length() == FLOAT_SPECIES.length();
+	}
+
+	/**
+	 * Accumulate all kernel taps for one vector of output pixels starting at column x.
+	 * Taps are summed in the same order as the scalar path so results are bit-identical.
+	 */
+	private static IntVector convolveLanes(int[][] rows, int[] rowBase, int x,
+	                                       float[] kernel, int kernelSize, IntVector center) {
+		FloatVector accR = FloatVector.zero(FLOAT_SPECIES);
+		FloatVector accG = FloatVector.zero(FLOAT_SPECIES);
+		FloatVector accB = FloatVector.zero(FLOAT_SPECIES);
+
+		for (int ky = 0; ky < kernelSize; ky++) {
+			int[] row = rows[ky];
+			int base = rowBase[ky] + x;
+			for (int kx = 0; kx < kernelSize; kx++) {
+				float weight = kernel[ky * kernelSize + kx];
+				if (weight == 0f) {
+					continue;
+				}
+
+				IntVector pixels = IntVector.fromArray(INT_SPECIES, row, base + kx);
+				accR = accR.add(toFloat(pixels.lanewise(VectorOperators.LSHR, RED_SHIFT).and(0xFF)).mul(weight));
+				accG = accG.add(toFloat(pixels.lanewise(VectorOperators.LSHR, GREEN_SHIFT).and(0xFF)).mul(weight));
+				accB = accB.add(toFloat(pixels.and(0xFF)).mul(weight));
+			}
+		}
+
+		return packLanes(accR, accG, accB, center);
+	}
+
+	/**
+	 * Same as above with taps loaded from an off-heap frame; rowBase holds pixel indexes
+	 */
+	private static IntVector convolveLanes(MemorySegment src, long[] rowBase, int x,
+	                                       float[] kernel, int kernelSize, IntVector center) {
+		FloatVector accR = FloatVector.zero(FLOAT_SPECIES);
+		FloatVector accG = FloatVector.zero(FLOAT_SPECIES);
+		FloatVector accB = FloatVector.zero(FLOAT_SPECIES);
+		ByteOrder order = ByteOrder.nativeOrder();
+
+		for (int ky = 0; ky < kernelSize; ky++) {
+			long base = rowBase[ky] + x;
+			for (int kx = 0; kx < kernelSize; kx++) {
+				float weight = kernel[ky * kernelSize + kx];
+				if (weight == 0f) {
+					continue;
+				}
+
+				IntVector pixels = IntVector.fromMemorySegment(INT_SPECIES, src, (base + kx) * Integer.BYTES, order);
+				accR = accR.add(toFloat(pixels.lanewise(VectorOperators.LSHR, RED_SHIFT).and(0xFF)).mul(weight));
+				accG = accG.add(toFloat(pixels.lanewise(VectorOperators.LSHR, GREEN_SHIFT).and(0xFF)).mul(weight));
+				accB = accB.add(toFloat(pixels.and(0xFF)).mul(weight));
+			}
+		}
+
+		return packLanes(accR, accG, accB, center);
+	}
+
+	private static IntVector packLanes(FloatVector accR, FloatVector accG, FloatVector accB, IntVector center) {
+		IntVector red = clamp(toInt(accR));
+		IntVector green = clamp(toInt(accG));
+		IntVector blue = clamp(toInt(accB));
+
+		return center.and(ALPHA_MASK)
+				.or(red.lanewise(VectorOperators.LSHL, RED_SHIFT))
+				.or(green.lanewise(VectorOperators.LSHL, GREEN_SHIFT))
+				.or(blue);
+	}
+
+	private static FloatVector toFloat(IntVector values) {
+		return (FloatVector) values.convertShape(VectorOperators.I2F, FLOAT_SPECIES, 0);
+	}
+
+	private static IntVector toInt(FloatVector values) {
+		// F2I truncates toward zero like the scalar (int) cast
+		return (IntVector) values.convertShape(VectorOperators.F2I, INT_SPECIES, 0);
+	}
+
+	/**
+	 * Scalar reference convolution of columns [xStart, xEnd) of row y, clamping taps at the frame edge
+	 */
+	private static void convolvePixelsScalar(int[] src, int[] dst, int width, int height,
+	                                         float[] kernel, int kernelSize, int y, int xStart, int xEnd) {
 		int offset = kernelSize / 2;
 
-		// Create local arrays to avoid thread contention on BufferedImage
-		int[] srcPixels = new int[width * height];
-		int[] dstPixels = new int[width * height];
+		for (int x = xStart; x < xEnd; x++) {
+			float r = 0, g = 0, b = 0;
 
-		try {
-			src.getRGB(0, 0, width, height, srcPixels, 0, width);
-
-			// Process each pixel
-			for (int y = 0; y < height; y++) {
-				for (int x = 0; x < width; x++) {
-					float r = 0, g = 0, b = 0;
-					int a = 0;
-
-					// Apply kernel
-					for (int ky = 0; ky < kernelSize; ky++) {
-						for (int kx = 0; kx < kernelSize; kx++) {
-							int px = Math.min(Math.max(x + kx - offset, 0), width - 1);
-							int py = Math.min(Math.max(y + ky - offset, 0), height - 1);
-
-							int pixel = srcPixels[py * width + px];
-							float weight = kernel[ky * kernelSize + kx];
-
-							if (kx == offset && ky == offset) {
-								a = (pixel >> 24) & 0xFF; // Preserve alpha from center pixel
-							}
-
-							r += weight * ((pixel >> 16) & 0xFF);
-							g += weight * ((pixel >> 8) & 0xFF);
-							b += weight * (pixel & 0xFF);
-						}
-					}
-
-					int finalR = Math.min(255, Math.max(0, (int)r));
-					int finalG = Math.min(255, Math.max(0, (int)g));
-					int finalB = Math.min(255, Math.max(0, (int)b));
-
-					dstPixels[y * width + x] = (a << 24) | (finalR << 16) | (finalG << 8) | finalB;
+			for (int ky = 0; ky < kernelSize; ky++) {
+				int py = Math.min(Math.max(y + ky - offset, 0), height - 1);
+				for (int kx = 0; kx < kernelSize; kx++) {
+					int px = Math.min(Math.max(x + kx - offset, 0), width - 1);
+
+					int pixel = src[py * width + px];
+					float weight = kernel[ky * kernelSize + kx];
+
+					r += weight * ((pixel >> 16) & 0xFF);
+					g += weight * ((pixel >> 8) & 0xFF);
+					b += weight * (pixel & 0xFF);
 				}
 			}
 
-			dst.setRGB(0, 0, width, height, dstPixels, 0, width);
+			int a = (src[y * width + x] >> 24) & 0xFF;
+			int finalR = Math.min(255, Math.max(0, (int)r));
+			int finalG = Math.min(255, Math.max(0, (int)g));
+			int finalB = Math.min(255, Math.max(0, (int)b));
 
-		} catch (Exception e) {
-			System.err.println("Convolution operation failed: " + e.getMessage());
-			// Create a copy as fallback
-			dst.getGraphics().drawImage(src, 0, 0, null);
+			dst[y * width + x] = (a << 24) | (finalR << 16) | (finalG << 8) | finalB;
+		}
+	}
+
+	/**
+	 * Scalar reference convolution over an off-heap frame, see the int[] version
+	 */
+	private static void convolvePixelsScalar(MemorySegment src, MemorySegment dst, int width, int height,
+	                                         float[] kernel, int kernelSize, int y, int xStart, int xEnd) {
+		int offset = kernelSize / 2;
+
+		for (int x = xStart; x < xEnd; x++) {
+			float r = 0, g = 0, b = 0;
+
+			for (int ky = 0; ky < kernelSize; ky++) {
+				int py = Math.min(Math.max(y + ky - offset, 0), height - 1);
+				for (int kx = 0; kx < kernelSize; kx++) {
+					int px = Math.min(Math.max(x + kx - offset, 0), width - 1);
+
+					int pixel = src.getAtIndex(ValueLayout.JAVA_INT, (long) py * width + px);
+					float weight = kernel[ky * kernelSize + kx];
+
+					r += weight * ((pixel >> 16) & 0xFF);
+					g += weight * ((pixel >> 8) & 0xFF);
+					b += weight * (pixel & 0xFF);
+				}
+			}
+
+			long index = (long) y * width + x;
+			int a = (src.getAtIndex(ValueLayout.JAVA_INT, index) >> 24) & 0xFF;
+			int finalR = Math.min(255, Math.max(0, (int)r));
+			int finalG = Math.min(255, Math.max(0, (int)g));
+			int finalB = Math.min(255, Math.max(0, (int)b));
+
+			dst.setAtIndex(ValueLayout.JAVA_INT, index, (a << 24) | (finalR << 16) | (finalG << 8) | finalB);
 		}
 	}
 
@@ -314,4 +521,4 @@ public class VectorUtils {
 		if (chunks < 256) return vectorLength * 16;
 		return vectorLength * 64;
 	}
-}
\ No newline at end of file
+}